@@ -56,7 +56,7 @@ public class VpsAssignDispatchRecipientsStartStep implements RecordWorkflowActio
         List<String> dispatchCountriesGroupLabel = VaultCollections.newList();
         // Process Submission Records
 
-        //get valid dispatch groups
+        //get valid dispatch groups (cached for the request)
         groupNamesLabel = dispatchHelper.getGroupNameLabels(USER_MANAGED_GROUP);
 
 
@@ -67,23 +67,28 @@ public class VpsAssignDispatchRecipientsStartStep implements RecordWorkflowActio
                 for (String item : dispatchCountriesLabel) {
                     //String groupAPIName = StringUtils.replaceAll(item.toLowerCase(), " ", "_").concat(DISPATCH_COUNTRIES_GROUP_NAME_SUFFIX);
                     String groupLabel = item.concat(DISPATCH_COUNTRIES_GROUP_NAME_SUFFIX);
-                    dispatchCountriesGroupLabel.add(groupLabel);
                     if (groupNamesLabel.containsKey(groupLabel)) {
                         if (debug) log.debug("Group Present:{}", groupLabel);
+                        if (!dispatchCountriesGroupLabel.contains(groupLabel)) {
+                            dispatchCountriesGroupLabel.add(groupLabel);
+                        }
                         groupMatch = true;
 
                     } else {
                         throw new RollbackException("OPERATION_NOT_ALLOWED", "User Managed Group " + groupLabel + "  is missing.");
                     }
                 }
-                if (groupMatch) {
-                    dispatchHelper.setParticipants(workflowInstanceService, participantGroup, dispatchCountriesGroupLabel, groupNamesLabel);
-                }
             }
             //Very important step (Removed from SubmissionDispatchHandler & added here)
             submissionRecord.setValue(DISPATCH_COUNTRIES, null);
             recordList.add(submissionRecord);
         }
+
+        // Resolve all the dispatch groups in one bulk call for this workflow event
+        if (groupMatch) {
+            dispatchHelper.setParticipants(workflowInstanceService, participantGroup, dispatchCountriesGroupLabel, groupNamesLabel);
+        }
+
         // Bulk saves the records
         if (recordList.size() > 0) {
             RecordServiceUtil.updateRecordList(recordList, SUBMISSION_OBJ);
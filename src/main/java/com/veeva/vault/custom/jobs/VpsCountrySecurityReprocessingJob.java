@@ -0,0 +1,255 @@
+/*
+ * --------------------------------------------------------------------
+ * Job:         VpsCountrySecurityReprocessingJob
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Recomputes the country security of the parents flagged
+ *              for reprocessing from their country child records and
+ *              clears the flag, in bulk and outside of the country
+ *              triggers.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.jobs;
+
+import com.veeva.vault.custom.model.CountryIndex;
+import com.veeva.vault.custom.model.ReprocessingFlagContext;
+import com.veeva.vault.custom.util.VpsJobRecordWriter;
+import com.veeva.vault.custom.util.VpsPagedJobInput;
+import com.veeva.vault.custom.util.VpsVQLHelper;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.data.ObjectFieldMetadataCollectionResponse;
+import com.veeva.vault.sdk.api.data.ObjectMetadataService;
+import com.veeva.vault.sdk.api.data.Record;
+import com.veeva.vault.sdk.api.data.RecordService;
+import com.veeva.vault.sdk.api.job.*;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Reprocesses the country security of the application__v and submission__v records
+ * flagged reprocessing_required__c (country_security_processing_status__c) by the country
+ * triggers (see ReprocessingFlagContext). Country security is driven by DAC on the
+ * countries picklist of the parent: application_countries__c on application__v and
+ * reporting_countries__c on submission__v (countries_field overrides it together with
+ * object_name). The flagged ids are keyset paged into one job item per task (see
+ * VpsPagedJobInput); each task recomputes the countries of its records in bulk from
+ * application_country__rim/submission_country__rim and saves them with the status set
+ * to processed__c, up to 500 records at once, so the flag is only cleared together with
+ * the recomputed countries. task_count spreads the ids over that many parallel tasks
+ * instead of a fixed task_size. Throughput is logged per task and in total.
+ */
+@JobInfo(adminConfigurable = true, chunkSize = 1)
+public class VpsCountrySecurityReprocessingJob implements Job {
+    public static final String JOB_NAME = "vps_country_security_reprocessing_job__c";
+    public static final String PARAM_OBJECT_NAME = "object_name";
+    public static final String PARAM_TASK_SIZE = "task_size";
+    public static final String PARAM_TASK_COUNT = "task_count";
+    public static final String PARAM_RETRY_IDS = "retry_ids";
+    public static final String PARAM_COUNTRIES_FIELD = "countries_field";
+
+    private static final String OBJECT_APPLICATION = "application__v";
+    private static final String OBJECT_SUBMISSION = "submission__v";
+    private static final String COUNTRY_CODE = "country_code__c";
+    private static final String APPLICATION_COUNTRIES_FIELD = "application_countries__c";
+    private static final String SUBMISSION_COUNTRIES_FIELD = "reporting_countries__c";
+    private static final String OUTPUT_PROCESSED = "processed";
+    private static final String OUTPUT_MILLIS = "millis";
+    private static final String QUERY_FLAGGED = "SELECT id FROM %s WHERE " + ReprocessingFlagContext.COUNTRY_PROCESSING
+            + " = '" + ReprocessingFlagContext.REPROCESSING_REQUIRED + "'";
+    private static final String QUERY_CHILD_COUNTRIES = "SELECT %s, " + COUNTRY_CODE + " FROM %s WHERE %s CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+
+    @Override
+    public JobInputSupplier init(JobInitContext jobInitContext) {
+        String objectName = jobInitContext.getJobParameter(PARAM_OBJECT_NAME, JobParamValueType.STRING);
+        String retryIds = jobInitContext.getJobParameter(PARAM_RETRY_IDS, JobParamValueType.STRING);
+        String countriesField = jobInitContext.getJobParameter(PARAM_COUNTRIES_FIELD, JobParamValueType.STRING);
+        JobLogger jobLogger = jobInitContext.getJobLogger();
+        List<JobItem> jobItems = VaultCollections.newList();
+
+        // both parent objects unless the job is limited to one; retry ids belong to the given object
+        List<String> objectNames = (objectName == null || objectName.trim().isEmpty())
+                ? VaultCollections.asList(OBJECT_APPLICATION, OBJECT_SUBMISSION)
+                : VaultCollections.asList(objectName.trim());
+        if (retryIds != null && !retryIds.trim().isEmpty() && objectNames.size() > 1) {
+            jobLogger.log("retry_ids requires object_name, reprocessing all flagged records instead");
+            retryIds = null;
+        }
+        if (countriesField != null && !countriesField.trim().isEmpty() && objectNames.size() > 1) {
+            jobLogger.log("countries_field requires object_name, using the default countries fields instead");
+            countriesField = null;
+        }
+
+        for (String name : objectNames) {
+            String field = getCountriesField(name, countriesField);
+            if (!fieldExists(name, field)) {
+                jobLogger.log("Countries field " + field + " does not exist on " + name + ", skipping " + name);
+                continue;
+            }
+
+            jobLogger.log("Finding " + name + " records flagged " + ReprocessingFlagContext.REPROCESSING_REQUIRED);
+            jobItems.addAll(new VpsPagedJobInput(String.format(QUERY_FLAGGED, name))
+                    .withTaskSize(jobInitContext.getJobParameter(PARAM_TASK_SIZE, JobParamValueType.STRING))
+                    .withTaskCount(jobInitContext.getJobParameter(PARAM_TASK_COUNT, JobParamValueType.STRING))
+                    .withIds(retryIds)
+                    .withItemValue(PARAM_OBJECT_NAME, name)
+                    .withItemValue(PARAM_COUNTRIES_FIELD, field)
+                    .buildItems(jobInitContext));
+        }
+
+        return jobInitContext.newJobInput(jobItems);
+    }
+
+    @Override
+    public void process(JobProcessContext jobProcessContext) {
+        LocalDateTime startTime = LocalDateTime.now();
+        RecordService recordService = ServiceLocator.locate(RecordService.class);
+        JobLogger jobLogger = jobProcessContext.getJobLogger();
+        List<JobItem> jobItems = jobProcessContext.getCurrentTask().getItems();
+        List<Record> recordList = VaultCollections.newList();
+
+        for (JobItem jobItem : jobItems) {
+            String objectName = jobItem.getValue(PARAM_OBJECT_NAME, JobValueType.STRING);
+            String countriesField = jobItem.getValue(PARAM_COUNTRIES_FIELD, JobValueType.STRING);
+
+            List<String> ids = VpsPagedJobInput.getIds(jobItem);
+            Map<String, Set<String>> countriesById = getCountries(objectName, ids);
+
+            for (String id : ids) {
+                List<String> countries = VaultCollections.newList();
+                countries.addAll(countriesById.get(id));
+                Collections.sort(countries);
+
+                // the DAC on the countries field recomputes the security, the flag is cleared in the same save
+                Record record = recordService.newRecordWithId(objectName, id);
+                record.setValue(countriesField, countries.isEmpty() ? null : countries);
+                record.setValue(ReprocessingFlagContext.COUNTRY_PROCESSING, VaultCollections.asList(ReprocessingFlagContext.PROCESSED));
+                recordList.add(record);
+            }
+        }
+
+        jobLogger.log("Number of records being processed: " + recordList.size());
+
+        if (recordList.size() > 0) {
+            VpsJobRecordWriter writer = new VpsJobRecordWriter(jobLogger);
+            writer.save(recordList);
+
+            TaskOutput taskOutput = jobProcessContext.getCurrentTask().getTaskOutput();
+            writer.writeOutput(jobProcessContext.getCurrentTask(), PARAM_OBJECT_NAME, PARAM_COUNTRIES_FIELD);
+
+            long millis = ChronoUnit.MILLIS.between(startTime, LocalDateTime.now());
+            taskOutput.setValue(OUTPUT_PROCESSED, String.valueOf(writer.getSucceeded()));
+            taskOutput.setValue(OUTPUT_MILLIS, String.valueOf(millis));
+            jobLogger.log("Reprocessed " + writer.getSucceeded() + " records in " + millis + " ms (" + perSecond(writer.getSucceeded(), millis) + " records/s)");
+        }
+    }
+
+    @Override
+    public void completeWithSuccess(JobCompletionContext context) {
+        completeJob(context);
+    }
+
+    @Override
+    public void completeWithError(JobCompletionContext context) {
+        completeJob(context);
+    }
+
+    public void completeJob(JobCompletionContext context) {
+        JobLogger logger = context.getJobLogger();
+        JobResult result = context.getJobResult();
+
+        long processed = 0;
+        long millis = 0;
+        for (JobTask task : context.getTasks()) {
+            processed += toLong(task.getTaskOutput().getValue(OUTPUT_PROCESSED, JobValueType.STRING));
+            millis += toLong(task.getTaskOutput().getValue(OUTPUT_MILLIS, JobValueType.STRING));
+        }
+        logger.log("Reprocessed " + processed + " records in " + result.getNumberTasks() + " tasks, "
+                + millis + " ms task time (" + perSecond(processed, millis) + " records/s per task)");
+
+        int failedTaskCount = result.getNumberFailedTasks();
+        if (failedTaskCount > 0) {
+            logger.log("Complete with error: " + result.getNumberFailedTasks() + " tasks failed out of " + result.getNumberTasks());
+            VpsJobRecordWriter.logFailureManifest(context);
+            VpsJobRecordWriter.startRetryRuns(context, JOB_NAME, PARAM_RETRY_IDS, PARAM_OBJECT_NAME, PARAM_COUNTRIES_FIELD);
+        }
+        else {
+            logger.log("All tasks completed successfully, total: " + result.getNumberCompletedTasks());
+        }
+    }
+
+    /**
+     * @param objectName application__v or submission__v
+     * @param countriesField configured countries field, may be null
+     * @return the countries field of the object
+     */
+    private static String getCountriesField(String objectName, String countriesField) {
+        if (countriesField != null && !countriesField.trim().isEmpty()) {
+            return countriesField.trim();
+        }
+        return OBJECT_APPLICATION.equals(objectName) ? APPLICATION_COUNTRIES_FIELD : SUBMISSION_COUNTRIES_FIELD;
+    }
+
+    /**
+     * Checks the object metadata for the field, so a misconfigured countries field is
+     * skipped while query or permission errors still fail the job
+     *
+     * @param objectName object name
+     * @param fieldName field name
+     * @return true when the object defines the field
+     */
+    private static boolean fieldExists(String objectName, String fieldName) {
+        ObjectMetadataService objectMetadataService = ServiceLocator.locate(ObjectMetadataService.class);
+        ObjectFieldMetadataCollectionResponse fields = objectMetadataService.getFields(
+                objectMetadataService.newFieldCollectionRequest(objectName).build());
+        return fields.getFields().stream().anyMatch(field -> fieldName.equals(field.getName()));
+    }
+
+    /**
+     * Reads the country codes of the country child records of the parents, as country picklist values
+     *
+     * @param objectName application__v or submission__v
+     * @param ids parent ids
+     * @return country picklist values by parent id, an empty set for parents without countries
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<String>> getCountries(String objectName, List<String> ids) {
+        String childObject = OBJECT_APPLICATION.equals(objectName) ? "application_country__rim" : "submission_country__rim";
+        String parentField = OBJECT_APPLICATION.equals(objectName) ? "application__rim" : "submission__rim";
+        Map<String, Set<String>> countriesById = VaultCollections.newMap();
+        for (String id : ids) {
+            countriesById.put(id, VaultCollections.newSet());
+        }
+
+        CountryIndex countryIndex = CountryIndex.get();
+        new VpsVQLHelper().runChunkedVQL(String.format(QUERY_CHILD_COUNTRIES, parentField, childObject, parentField), ids, true, queryResult -> {
+            String countryCode = queryResult.getValue(COUNTRY_CODE, ValueType.STRING);
+            Set<String> countries = countriesById.get(queryResult.getValue(parentField, ValueType.STRING));
+            if (countryCode != null && countries != null) {
+                countries.add(countryIndex.getPicklistValue(countryCode));
+            }
+        });
+        return countriesById;
+    }
+
+    private static long perSecond(long count, long millis) {
+        return millis > 0 ? count * 1000 / millis : count;
+    }
+
+    private static long toLong(String value) {
+        return (value == null || !value.matches("\\d+")) ? 0 : Long.parseLong(value);
+    }
+}
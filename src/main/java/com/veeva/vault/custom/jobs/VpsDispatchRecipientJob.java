@@ -0,0 +1,127 @@
+/*
+ * --------------------------------------------------------------------
+ * Job:         VpsDispatchRecipientJob
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Creates the dispatch recipients of large dispatch x user
+ *              cross products outside of the role trigger.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.jobs;
+
+import com.veeva.vault.custom.util.VpsDispatchRecipientWriter;
+import com.veeva.vault.sdk.api.core.StringUtils;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.job.*;
+
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Creates the dispatch recipients for large dispatch x user cross products
+ * outside of the role trigger. One job item is created per dispatch; each task
+ * streams its dispatches x the added users through VpsDispatchRecipientWriter.
+ */
+@JobInfo(adminConfigurable = true)
+public class VpsDispatchRecipientJob implements Job {
+    public static final String JOB_NAME = "vps_dispatch_recipient_job__c";
+    public static final String PARAM_APPLICATION_ID = "application_id";
+    public static final String PARAM_SUBMISSION_ID = "submission_id";
+    public static final String PARAM_DISPATCH_IDS = "dispatch_ids";
+    public static final String PARAM_USER_IDS = "user_ids";
+
+    @Override
+    public JobInputSupplier init(JobInitContext jobInitContext) {
+        String applicationId = jobInitContext.getJobParameter(PARAM_APPLICATION_ID, JobParamValueType.STRING);
+        String submissionId = jobInitContext.getJobParameter(PARAM_SUBMISSION_ID, JobParamValueType.STRING);
+        String dispatchIds = jobInitContext.getJobParameter(PARAM_DISPATCH_IDS, JobParamValueType.STRING);
+        String userIds = jobInitContext.getJobParameter(PARAM_USER_IDS, JobParamValueType.STRING);
+
+        List<JobItem> jobItems = VaultCollections.newList();
+        for (String dispatchId : StringUtils.split(dispatchIds, ",")) {
+            JobItem jobItem = jobInitContext.newJobItem();
+            jobItem.setValue(PARAM_APPLICATION_ID, applicationId);
+            jobItem.setValue(PARAM_SUBMISSION_ID, submissionId);
+            jobItem.setValue("dispatch_id", dispatchId);
+            jobItem.setValue(PARAM_USER_IDS, userIds);
+            jobItems.add(jobItem);
+        }
+
+        JobLogger jobLogger = jobInitContext.getJobLogger();
+        jobLogger.log("Dispatches to process: " + jobItems.size());
+
+        return jobInitContext.newJobInput(jobItems);
+    }
+
+    @Override
+    public void process(JobProcessContext jobProcessContext) {
+        JobLogger jobLogger = jobProcessContext.getJobLogger();
+        List<JobItem> jobItems = jobProcessContext.getCurrentTask().getItems();
+        if (jobItems.isEmpty()) {
+            return;
+        }
+
+        // All items of a job share the application, submission and users
+        JobItem firstItem = jobItems.get(0);
+        VpsDispatchRecipientWriter writer = new VpsDispatchRecipientWriter(
+                firstItem.getValue(PARAM_APPLICATION_ID, JobValueType.STRING),
+                firstItem.getValue(PARAM_SUBMISSION_ID, JobValueType.STRING), false);
+
+        Set<String> userIds = VaultCollections.newSet();
+        for (String userId : StringUtils.split(firstItem.getValue(PARAM_USER_IDS, JobValueType.STRING), ",")) {
+            userIds.add(userId);
+        }
+
+        List<String> dispatchIds = VaultCollections.newList();
+        for (JobItem jobItem : jobItems) {
+            dispatchIds.add(jobItem.getValue("dispatch_id", JobValueType.STRING));
+        }
+
+        int recordsCreated = writer.write(dispatchIds, userIds);
+        jobLogger.log("Dispatches processed: " + dispatchIds.size() + ", dispatch recipients created: " + recordsCreated
+                + ", failed: " + writer.getRecordsFailed());
+
+        if (writer.getFirstError() != null) {
+            TaskOutput taskOutput = jobProcessContext.getCurrentTask().getTaskOutput();
+            taskOutput.setState(TaskState.ERRORS_ENCOUNTERED);
+            taskOutput.setValue("firstError", writer.getFirstError());
+        }
+    }
+
+    @Override
+    public void completeWithSuccess(JobCompletionContext context) {
+        completeJob(context);
+    }
+
+    @Override
+    public void completeWithError(JobCompletionContext context) {
+        completeJob(context);
+    }
+
+    public void completeJob(JobCompletionContext context) {
+        JobLogger logger = context.getJobLogger();
+        JobResult result = context.getJobResult();
+
+        int failedTaskCount = result.getNumberFailedTasks();
+        if (failedTaskCount > 0) {
+            logger.log("Complete with error: " + result.getNumberFailedTasks() + " tasks failed out of " + result.getNumberTasks());
+            List<JobTask> tasks = context.getTasks();
+            for (JobTask task : tasks) {
+                TaskOutput taskOutput = task.getTaskOutput();
+                if (TaskState.ERRORS_ENCOUNTERED.equals(taskOutput.getState())) {
+                    logger.log(task.getTaskId() + " failed with error message " + taskOutput.getValue("firstError", JobValueType.STRING));
+                }
+            }
+        }
+        else {
+            logger.log("All tasks completed successfully, total: " + result.getNumberCompletedTasks());
+        }
+    }
+}
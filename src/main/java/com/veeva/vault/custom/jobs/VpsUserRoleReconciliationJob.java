@@ -0,0 +1,108 @@
+/*
+ * --------------------------------------------------------------------
+ * Job:         VpsUserRoleReconciliationJob
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Reconciles the user role setup records of a template
+ *              group with its changed templates outside of the
+ *              user role template trigger.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.jobs;
+
+import com.veeva.vault.custom.services.VpsUserRoleReconciliationService;
+import com.veeva.vault.custom.util.VpsJobRecordWriter;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.core.VaultRuntimeException;
+import com.veeva.vault.sdk.api.job.*;
+
+import java.util.List;
+
+
+/**
+ * Reconciles the user role setup records of one template group after its templates
+ * changed (see UserRoleTemplateProvision). The job has a single item: the template
+ * group and the previous versions of the changed templates, encoded by
+ * VpsUserRoleReconciliationService.startReconciliation. The task reads the committed
+ * templates and the active assignments and writes only the difference through a
+ * VpsJobRecordWriter; rows that still fail are reported in the failure manifest.
+ */
+@JobInfo(adminConfigurable = true, chunkSize = 1)
+public class VpsUserRoleReconciliationJob implements Job {
+    public static final String JOB_NAME = "vps_user_role_reconciliation_job__c";
+    public static final String PARAM_TEMPLATE_GROUP_ID = "template_group_id";
+    public static final String PARAM_PREVIOUS_TEMPLATES = "previous_templates";
+
+    @Override
+    public JobInputSupplier init(JobInitContext jobInitContext) {
+        String templateGroupId = jobInitContext.getJobParameter(PARAM_TEMPLATE_GROUP_ID, JobParamValueType.STRING);
+        String previousTemplates = jobInitContext.getJobParameter(PARAM_PREVIOUS_TEMPLATES, JobParamValueType.STRING);
+
+        List<JobItem> jobItems = VaultCollections.newList();
+        if (templateGroupId != null && !templateGroupId.isEmpty()) {
+            JobItem jobItem = jobInitContext.newJobItem();
+            jobItem.setValue(PARAM_TEMPLATE_GROUP_ID, templateGroupId);
+            jobItem.setValue(PARAM_PREVIOUS_TEMPLATES, previousTemplates);
+            jobItems.add(jobItem);
+        }
+
+        jobInitContext.getJobLogger().log("Template group to reconcile: " + templateGroupId);
+        return jobInitContext.newJobInput(jobItems);
+    }
+
+    @Override
+    public void process(JobProcessContext jobProcessContext) {
+        VpsUserRoleReconciliationService vpsUserRoleReconciliationService =
+                ServiceLocator.locate(VpsUserRoleReconciliationService.class);
+        JobLogger jobLogger = jobProcessContext.getJobLogger();
+
+        for (JobItem jobItem : jobProcessContext.getCurrentTask().getItems()) {
+            String templateGroupId = jobItem.getValue(PARAM_TEMPLATE_GROUP_ID, JobValueType.STRING);
+            VpsJobRecordWriter writer = new VpsJobRecordWriter(jobLogger);
+            try {
+                int recordsChanged = vpsUserRoleReconciliationService.reconcile(templateGroupId,
+                        jobItem.getValue(PARAM_PREVIOUS_TEMPLATES, JobValueType.STRING), writer);
+                jobLogger.log("Template group " + templateGroupId + ": user role setup records created and deleted: " + recordsChanged);
+                writer.writeOutput(jobProcessContext.getCurrentTask());
+            }
+            catch (VaultRuntimeException e) {
+                // the diff is recomputed on a rerun, so rows written before the error are not repeated
+                TaskOutput taskOutput = jobProcessContext.getCurrentTask().getTaskOutput();
+                taskOutput.setState(TaskState.ERRORS_ENCOUNTERED);
+                taskOutput.setValue(VpsJobRecordWriter.OUTPUT_FIRST_ERROR, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void completeWithSuccess(JobCompletionContext context) {
+        completeJob(context);
+    }
+
+    @Override
+    public void completeWithError(JobCompletionContext context) {
+        completeJob(context);
+    }
+
+    public void completeJob(JobCompletionContext context) {
+        JobLogger logger = context.getJobLogger();
+        JobResult result = context.getJobResult();
+
+        int failedTaskCount = result.getNumberFailedTasks();
+        if (failedTaskCount > 0) {
+            logger.log("Complete with error: " + result.getNumberFailedTasks() + " tasks failed out of " + result.getNumberTasks());
+            // rows that failed are not retried by id; a rerun of the template group recomputes the diff
+            VpsJobRecordWriter.logFailureManifest(context);
+        }
+        else {
+            logger.log("All tasks completed successfully, total: " + result.getNumberCompletedTasks());
+        }
+    }
+}
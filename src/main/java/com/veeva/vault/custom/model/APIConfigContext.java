@@ -0,0 +1,100 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       APIConfigContext
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped API configuration. The API version and
+ * 				 the http callout connection are read once per request
+ * 				 from the VpsAPIClient rows of vps_setting__c. Only the
+ * 				 settings are shared; each caller creates its own
+ * 				 VpsAPIClient, so error lists are not mixed between
+ * 				 callers. Without an api_version setting the callouts
+ * 				 keep the versions they were written against: v19.1 for
+ * 				 VpsAPIClient and v21.2 for the query API.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.custom.util.QueryServiceUtil;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultRuntimeException;
+
+@UserDefinedClassInfo
+public class APIConfigContext implements RequestContextValue {
+
+	public static final String DEFAULT_API_VERSION = "v19.1";
+	public static final String DEFAULT_QUERY_API_VERSION = "v21.2";
+	public static final String DEFAULT_CONNECTION = "local_http_callout_connection";
+	private static final String API_CONFIG_CONTEXT = "API_CONFIG";
+	private static final String SETTING_API_CONNECTION = "api_connection";
+	private static final String SETTING_API_VERSION = "api_version";
+	private static final String VQL_SETTINGS = "SELECT key__c, value__c FROM vps_setting__c "
+			+ "WHERE external_id__c = 'VpsAPIClient' AND status__v = 'active__v'";
+
+	private String apiVersion = null;
+	private String connection = DEFAULT_CONNECTION;
+
+	/**
+	 * @return the configuration of the current request, loading the settings on first use
+	 */
+	public static APIConfigContext get() {
+		APIConfigContext config = RequestContext.get().getValue(API_CONFIG_CONTEXT, APIConfigContext.class);
+		if (config == null) {
+			config = new APIConfigContext();
+			config.loadSettings();
+			RequestContext.get().setValue(API_CONFIG_CONTEXT, config);
+		}
+		return config;
+	}
+
+	/**
+	 * @return the configured API version, v19.1 when not configured
+	 */
+	public String getApiVersion() {
+		return apiVersion == null ? DEFAULT_API_VERSION : apiVersion;
+	}
+
+	/**
+	 * @return the configured API version, v21.2 when not configured
+	 */
+	public String getQueryApiVersion() {
+		return apiVersion == null ? DEFAULT_QUERY_API_VERSION : apiVersion;
+	}
+
+	public String getConnection() {
+		return connection;
+	}
+
+	private void loadSettings() {
+		try {
+			QueryServiceUtil.query(VQL_SETTINGS).streamResults().forEach(queryResult -> {
+				String key = queryResult.getValue("key__c", ValueType.STRING);
+				String value = queryResult.getValue("value__c", ValueType.STRING);
+				if (value == null || value.isEmpty()) {
+					return;
+				}
+				if (SETTING_API_VERSION.equals(key)) {
+					apiVersion = value;
+				}
+				else if (SETTING_API_CONNECTION.equals(key)) {
+					connection = value;
+				}
+			});
+		}
+		catch (VaultRuntimeException e) {
+			Log.error("APIConfigContext settings not available, using defaults: {}", e.getMessage());
+		}
+		Log.debug("APIConfigContext api version [{}], connection [{}]", getApiVersion(), connection);
+	}
+}
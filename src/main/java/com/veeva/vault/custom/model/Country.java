@@ -0,0 +1,55 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       Country
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  One country__v record of the CountryIndex: id, code and
+ * 				 name, plus the country picklist value derived from them.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+
+/**
+ * One country__v record of the CountryIndex. Country picklists use either the
+ * code form ("usa__c") or the id form ("000sc0d000012__c") of the value.
+ */
+@UserDefinedClassInfo
+public class Country {
+	private String id;
+	private String code;
+	private String name;
+
+	public Country(String id, String code, String name) {
+		super();
+
+		this.id = id;
+		this.code = code;
+		this.name = name;
+	}
+
+	public String getId() {
+		return id;
+	}
+	public String getCode() {
+		return code;
+	}
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the code form picklist value, e.g. "usa__c" for "USA"
+	 */
+	public String getPicklistValue() {
+		return CountryIndex.toPicklistValue(code);
+	}
+}
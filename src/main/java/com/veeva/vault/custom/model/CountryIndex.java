@@ -0,0 +1,124 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       CountryIndex
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped, bidirectional index of the country__v
+ * 				 records: country picklist value <-> country code <->
+ * 				 country id <-> name. The first use in a request loads the
+ * 				 whole country__v table (a few hundred rows) with one query,
+ * 				 so country lookups in either direction are map lookups
+ * 				 instead of string conversions and queries.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.Map;
+
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.custom.util.QueryServiceUtil;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class CountryIndex implements RequestContextValue {
+
+	private static final String COUNTRY_INDEX_CONTEXT = "COUNTRY_INDEX";
+	private static final String PICKLIST_SUFFIX = "__c";
+	private static final String VQL_COUNTRIES = "SELECT id, country_code__rim, name__v FROM country__v";
+
+	// keys are upper case codes and ids
+	@SuppressWarnings("unchecked")
+	private Map<String, Country> countriesByCode = VaultCollections.newMap();
+	@SuppressWarnings("unchecked")
+	private Map<String, Country> countriesById = VaultCollections.newMap();
+
+	/**
+	 * @return the country index of the current request; the first call queries all country__v records
+	 */
+	public static CountryIndex get() {
+		CountryIndex index = RequestContext.get().getValue(COUNTRY_INDEX_CONTEXT, CountryIndex.class);
+		if (index == null) {
+			index = new CountryIndex();
+			index.load();
+			RequestContext.get().setValue(COUNTRY_INDEX_CONTEXT, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @param code 3 char iso country code, any case
+	 * @return the country, null when it does not exist
+	 */
+	public Country getByCode(String code) {
+		return code == null ? null : countriesByCode.get(code.toUpperCase());
+	}
+
+	/**
+	 * @param id country__v id, any case
+	 * @return the country, null when it does not exist
+	 */
+	public Country getById(String id) {
+		return id == null ? null : countriesById.get(id.toUpperCase());
+	}
+
+	/**
+	 * Resolves a country picklist value in the code form ("usa__c") or the id form ("000sc0d000012__c")
+	 *
+	 * @param picklistValue country picklist value
+	 * @return the country, null when it does not exist
+	 */
+	public Country getByPicklistValue(String picklistValue) {
+		if (picklistValue == null || !picklistValue.endsWith(PICKLIST_SUFFIX)) {
+			return null;
+		}
+		String key = picklistValue.substring(0, picklistValue.length() - PICKLIST_SUFFIX.length());
+		Country country = getByCode(key);
+		return country != null ? country : getById(key);
+	}
+
+	/**
+	 * @param code 3 char iso country code
+	 * @return the code form picklist value of the country, e.g. "usa__c"; empty when there is no code
+	 */
+	public String getPicklistValue(String code) {
+		Country country = getByCode(code);
+		return country != null ? country.getPicklistValue() : toPicklistValue(code);
+	}
+
+	/**
+	 * @param code 3 char iso country code
+	 * @return the code form picklist value, e.g. "usa__c"; empty when there is no code
+	 */
+	public static String toPicklistValue(String code) {
+		if (code == null || code.equals("")) return "";
+		return code.toLowerCase() + PICKLIST_SUFFIX;
+	}
+
+	public int size() {
+		return countriesById.size();
+	}
+
+	private void load() {
+		QueryServiceUtil.query(VQL_COUNTRIES).streamResults().forEach(queryResult -> {
+			Country country = new Country(queryResult.getValue("id", ValueType.STRING),
+					queryResult.getValue("country_code__rim", ValueType.STRING),
+					queryResult.getValue("name__v", ValueType.STRING));
+			countriesById.put(country.getId().toUpperCase(), country);
+			if (country.getCode() != null) {
+				countriesByCode.put(country.getCode().toUpperCase(), country);
+			}
+		});
+		Log.debug("Country index loaded.  Size: {}", countriesById.size());
+	}
+}
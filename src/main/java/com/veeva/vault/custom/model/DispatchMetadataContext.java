@@ -0,0 +1,48 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       DispatchMetadataContext
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped cache of the dispatch workflow metadata:
+ * 				 the active group label to group name map of each group
+ * 				 type. Picklist labels are cached in MetadataCache.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.Map;
+
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class DispatchMetadataContext implements RequestContextValue {
+
+	// group type -> (group label -> group name)
+	@SuppressWarnings("unchecked")
+	private Map<String, Map<String, String>> groupNamesByType = VaultCollections.newMap();
+
+	/**
+	 * @param groupType group type, e.g. user_managed__v
+	 * @return group names by label of the group type, null when not loaded yet
+	 */
+	public Map<String, String> getGroupNamesByLabel(String groupType) {
+		return groupNamesByType.get(groupType);
+	}
+
+	public void setGroupNamesByLabel(String groupType, Map<String, String> groupNamesByLabel) {
+		groupNamesByType.put(groupType, groupNamesByLabel);
+	}
+
+	public boolean isGroupsLoaded(String groupType) {
+		return groupNamesByType.containsKey(groupType);
+	}
+}
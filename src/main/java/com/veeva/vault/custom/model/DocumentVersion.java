@@ -0,0 +1,60 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       DocumentVersion
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  One version of a document as read by
+ * 				 DocumentVersionCatalog.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import com.veeva.vault.custom.util.api.VpsAPIClient;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+
+@UserDefinedClassInfo
+public class DocumentVersion {
+	private String docId;
+	private String majorVersion;
+	private String minorVersion;
+	private boolean binder;
+	private String base30DocumentId;
+
+	public DocumentVersion(String docId, String majorVersion, String minorVersion, boolean binder, String base30DocumentId) {
+		this.docId = docId;
+		this.majorVersion = majorVersion;
+		this.minorVersion = minorVersion;
+		this.binder = binder;
+		this.base30DocumentId = base30DocumentId;
+	}
+
+	public String getDocId() {
+		return docId;
+	}
+	public String getMajorVersion() {
+		return majorVersion;
+	}
+	public String getMinorVersion() {
+		return minorVersion;
+	}
+	public boolean isBinder() {
+		return binder;
+	}
+	public String getBase30DocumentId() {
+		return base30DocumentId;
+	}
+
+	/**
+	 * @return docId_major_minor, the key used by the VpsAPIClient batch overloads
+	 */
+	public String getVersionKey() {
+		return VpsAPIClient.versionKey(docId, majorVersion, minorVersion);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       DocumentVersionCatalog
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped catalog of document versions. The
+ * 				 versions of many documents are read with one chunked
+ * 				 allversions query instead of one versions GET per
+ * 				 document, and each document is read once per request.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.custom.util.QueryServiceUtil;
+import com.veeva.vault.custom.util.VpsVQLHelper;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class DocumentVersionCatalog implements RequestContextValue {
+
+	private static final String DOCUMENT_VERSION_CATALOG_CONTEXT = "DOCUMENT_VERSION_CATALOG";
+	private static final String VQL_ALL_VERSIONS = "SELECT id, major_version_number__v, minor_version_number__v, binder__v, document_id__c "
+			+ "FROM allversions documents WHERE id CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+
+	@SuppressWarnings("unchecked")
+	private Map<String, List<DocumentVersion>> versionsByDocId = VaultCollections.newMap();
+
+	/**
+	 * @return the catalog of the current request
+	 */
+	public static DocumentVersionCatalog get() {
+		DocumentVersionCatalog catalog = RequestContext.get().getValue(DOCUMENT_VERSION_CATALOG_CONTEXT, DocumentVersionCatalog.class);
+		if (catalog == null) {
+			catalog = new DocumentVersionCatalog();
+			RequestContext.get().setValue(DOCUMENT_VERSION_CATALOG_CONTEXT, catalog);
+		}
+		return catalog;
+	}
+
+	/**
+	 * Reads the versions of the documents that are not cached yet, one query per chunk of ids
+	 *
+	 * @param docIds document ids
+	 */
+	@SuppressWarnings("unchecked")
+	public void prefetch(Collection<String> docIds) {
+		Set<String> missingDocIds = VaultCollections.newSet();
+		for (String docId : docIds) {
+			if (docId != null && !versionsByDocId.containsKey(docId)) {
+				missingDocIds.add(docId);
+				versionsByDocId.put(docId, VaultCollections.newList());
+			}
+		}
+		if (missingDocIds.isEmpty()) {
+			return;
+		}
+
+		for (String query : VpsVQLHelper.buildChunkedVQL(VQL_ALL_VERSIONS, missingDocIds, false)) {
+			QueryServiceUtil.query(query).streamResults().forEach(queryResult -> {
+				// document ids are numbers in VQL
+				String docId = queryResult.getValue("id", ValueType.NUMBER).toString();
+				BigDecimal majorVersion = queryResult.getValue("major_version_number__v", ValueType.NUMBER);
+				BigDecimal minorVersion = queryResult.getValue("minor_version_number__v", ValueType.NUMBER);
+				Boolean binder = queryResult.getValue("binder__v", ValueType.BOOLEAN);
+				List<DocumentVersion> versions = versionsByDocId.get(docId);
+				if (versions == null) {
+					return;
+				}
+				versions.add(new DocumentVersion(docId,
+						majorVersion.toString(),
+						minorVersion.toString(),
+						Boolean.TRUE.equals(binder),
+						queryResult.getValue("document_id__c", ValueType.STRING)));
+			});
+		}
+		Log.debug("DocumentVersionCatalog read versions of {} documents", missingDocIds.size());
+	}
+
+	/**
+	 * @param docId document id
+	 * @return all versions of the document, empty if the document does not exist
+	 */
+	public List<DocumentVersion> getVersions(String docId) {
+		if (!versionsByDocId.containsKey(docId)) {
+			prefetch(VaultCollections.asList(docId));
+		}
+		return versionsByDocId.get(docId);
+	}
+
+	/**
+	 * Drops a cached document, e.g. after its versions were updated
+	 *
+	 * @param docId document id
+	 */
+	public void invalidate(String docId) {
+		versionsByDocId.remove(docId);
+	}
+}
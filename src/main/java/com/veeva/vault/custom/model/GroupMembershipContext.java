@@ -0,0 +1,83 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       GroupMembershipContext
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped cache of group members. The members of
+ * 				 all groups that are not cached yet are read with one
+ * 				 chunked group_membership__sys query.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import com.veeva.vault.custom.util.QueryServiceUtil;
+import com.veeva.vault.custom.util.VpsVQLHelper;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class GroupMembershipContext implements RequestContextValue {
+
+	private static final String GROUP_MEMBERSHIP_CONTEXT = "GROUP_MEMBERSHIP";
+	private static final String VQL_GROUP_MEMBERS = "SELECT group_id, user_id FROM group_membership__sys "
+			+ "WHERE group_id CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Set<String>> userIdsByGroupId = VaultCollections.newMap();
+
+	/**
+	 * @return the group members of the current request
+	 */
+	public static GroupMembershipContext get() {
+		GroupMembershipContext context = RequestContext.get().getValue(GROUP_MEMBERSHIP_CONTEXT, GroupMembershipContext.class);
+		if (context == null) {
+			context = new GroupMembershipContext();
+			RequestContext.get().setValue(GROUP_MEMBERSHIP_CONTEXT, context);
+		}
+		return context;
+	}
+
+	/**
+	 * @param groupIds group ids
+	 * @return the distinct users of all the groups
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<String> getUserIds(Collection<String> groupIds) {
+		Set<String> missingGroupIds = VaultCollections.newSet();
+		for (String groupId : groupIds) {
+			if (!userIdsByGroupId.containsKey(groupId)) {
+				missingGroupIds.add(groupId);
+				userIdsByGroupId.put(groupId, VaultCollections.newSet());
+			}
+		}
+
+		for (String query : VpsVQLHelper.buildChunkedVQL(VQL_GROUP_MEMBERS, missingGroupIds, true)) {
+			QueryServiceUtil.query(query).streamResults().forEach(queryResult -> {
+				Set<String> userIds = userIdsByGroupId.get(queryResult.getValue("group_id", ValueType.STRING));
+				if (userIds != null) {
+					userIds.add(queryResult.getValue("user_id", ValueType.STRING));
+				}
+			});
+		}
+
+		Set<String> userIds = VaultCollections.newSet();
+		for (String groupId : groupIds) {
+			userIds.addAll(userIdsByGroupId.get(groupId));
+		}
+		return userIds;
+	}
+}
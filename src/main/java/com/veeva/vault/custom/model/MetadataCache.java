@@ -0,0 +1,190 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       MetadataCache
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped cache of near static metadata, keyed by
+ * 				 (kind, name): object types of an object, picklist value
+ * 				 labels and controlled vocabularies of a type (countries
+ * 				 are indexed by CountryIndex). Each entry is a String map.
+ * 				 Several names of a kind are loaded with one query
+ * 				 (prefetch); names that do not exist are cached as empty
+ * 				 entries. Lookups are counted as hits and misses, logged
+ * 				 when the outermost guarded trigger exits.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.custom.util.QueryServiceUtil;
+import com.veeva.vault.custom.util.VpsVQLHelper;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.picklist.Picklist;
+import com.veeva.vault.sdk.api.picklist.PicklistService;
+import com.veeva.vault.sdk.api.picklist.PicklistValue;
+import com.veeva.vault.sdk.api.query.QueryResult;
+
+@UserDefinedClassInfo
+public class MetadataCache implements RequestContextValue {
+
+	// name: object name; entry: object type id -> api name
+	public static final String KIND_OBJECT_TYPE = "object_type";
+	// name: picklist name; entry: picklist value name -> label
+	public static final String KIND_PICKLIST = "picklist";
+	// name: controlled vocabulary type; entry: name -> id
+	public static final String KIND_VOCABULARY = "controlled_vocabulary";
+
+	private static final String METADATA_CACHE = "METADATA_CACHE";
+	private static final String VQL_OBJECT_TYPES = "SELECT id, object_name__v, api_name__v FROM object_type__v "
+			+ "WHERE status__v = 'active__v' AND object_name__v CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+	private static final String VQL_VOCABULARIES = "SELECT id, name__v, controlled_vocabulary_type__rim FROM controlled_vocabulary__rim "
+			+ "WHERE controlled_vocabulary_type__rim CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+
+	// kind + ":" + name -> entry
+	@SuppressWarnings("unchecked")
+	private Map<String, Map<String, String>> entries = VaultCollections.newMap();
+	private int hits = 0;
+	private int misses = 0;
+
+	/**
+	 * @return the metadata cache of the current request
+	 */
+	public static MetadataCache get() {
+		MetadataCache cache = RequestContext.get().getValue(METADATA_CACHE, MetadataCache.class);
+		if (cache == null) {
+			cache = new MetadataCache();
+			RequestContext.get().setValue(METADATA_CACHE, cache);
+		}
+		return cache;
+	}
+
+	/**
+	 * @param objectName object name
+	 * @return object type api names by object type id, active object types only
+	 */
+	public Map<String, String> getObjectTypes(String objectName) {
+		return lookup(KIND_OBJECT_TYPE, objectName);
+	}
+
+	/**
+	 * @param picklistName picklist name
+	 * @return picklist value labels by picklist value name
+	 */
+	public Map<String, String> getPicklist(String picklistName) {
+		return lookup(KIND_PICKLIST, picklistName);
+	}
+
+	/**
+	 * @param picklistName picklist name
+	 * @param value picklist value name
+	 * @return label of the picklist value, null when it does not exist
+	 */
+	public String getPicklistLabel(String picklistName, String value) {
+		return getPicklist(picklistName).get(value);
+	}
+
+	/**
+	 * @param vocabularyType controlled vocabulary type, e.g. dossier_format__v
+	 * @return controlled vocabulary ids by name
+	 */
+	public Map<String, String> getVocabulary(String vocabularyType) {
+		return lookup(KIND_VOCABULARY, vocabularyType);
+	}
+
+	/**
+	 * Loads the entries of the names of a kind that are not cached yet, with one
+	 * (chunked) query per kind
+	 *
+	 * @param kind one of the KIND constants
+	 * @param names entry names
+	 */
+	@SuppressWarnings("unchecked")
+	public void prefetch(String kind, Collection<String> names) {
+		Set<String> missingNames = VaultCollections.newSet();
+		for (String name : names) {
+			if (!entries.containsKey(key(kind, name))) {
+				missingNames.add(name);
+				// names that are not found stay cached as empty entries
+				entries.put(key(kind, name), VaultCollections.newMap());
+			}
+		}
+		if (missingNames.isEmpty()) {
+			return;
+		}
+		misses += missingNames.size();
+		Log.debug("Metadata cache loading {} {} entries", missingNames.size(), kind);
+
+		if (KIND_PICKLIST.equals(kind)) {
+			PicklistService picklistService = ServiceLocator.locate(PicklistService.class);
+			for (String picklistName : missingNames) {
+				Picklist picklist = picklistService.getPicklist(picklistName);
+				for (PicklistValue picklistValue : picklist.getPicklistValues()) {
+					entries.get(key(kind, picklistName)).put(picklistValue.getName(), picklistValue.getLabel());
+				}
+			}
+		}
+		else if (KIND_OBJECT_TYPE.equals(kind)) {
+			query(VQL_OBJECT_TYPES, missingNames, queryResult -> entries.get(key(kind, queryResult.getValue("object_name__v", ValueType.STRING)))
+					.put(queryResult.getValue("id", ValueType.STRING), queryResult.getValue("api_name__v", ValueType.STRING)));
+		}
+		else if (KIND_VOCABULARY.equals(kind)) {
+			query(VQL_VOCABULARIES, missingNames, queryResult -> {
+				List<String> types = queryResult.getValue("controlled_vocabulary_type__rim", ValueType.PICKLIST_VALUES);
+				if (types != null && !types.isEmpty() && entries.containsKey(key(kind, types.get(0)))) {
+					entries.get(key(kind, types.get(0))).put(queryResult.getValue("name__v", ValueType.STRING), queryResult.getValue("id", ValueType.STRING));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Logs the lookup counts of the request cache, if one was used, and restarts them.
+	 * Called by the outermost guarded trigger when it exits (NestedTriggerContext).
+	 */
+	public static void logCounts() {
+		MetadataCache cache = RequestContext.get().getValue(METADATA_CACHE, MetadataCache.class);
+		if (cache != null && cache.hits + cache.misses > 0) {
+			Log.debug("Metadata cache hits: {}, misses: {}", cache.hits, cache.misses);
+			cache.hits = 0;
+			cache.misses = 0;
+		}
+	}
+
+	private Map<String, String> lookup(String kind, String name) {
+		Map<String, String> entry = entries.get(key(kind, name));
+		if (entry != null) {
+			hits++;
+			return entry;
+		}
+		prefetch(kind, VaultCollections.asList(name));
+		return entries.get(key(kind, name));
+	}
+
+	private void query(String baseQuery, Set<String> names, Consumer<QueryResult> resultConsumer) {
+		for (String query : VpsVQLHelper.buildChunkedVQL(baseQuery, names, true)) {
+			QueryServiceUtil.query(query).streamResults().forEach(resultConsumer);
+		}
+	}
+
+	private static String key(String kind, String name) {
+		return kind + ":" + name;
+	}
+}
@@ -1,24 +1,136 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       NestedTriggerContext
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped re-entrancy guard. Triggers enter on
+ * 				 execute and exit in a finally block, so the guard holds
+ * 				 the set of active triggers with their nesting depth
+ * 				 (chunks of the same trigger do not accumulate). Work
+ * 				 skipped because another trigger is active is counted
+ * 				 per trigger and logged when the guard goes idle.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
 package com.veeva.vault.custom.model;
 
-import java.util.List;
+import java.util.Map;
 
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.sdk.api.core.RequestContext;
 import com.veeva.vault.sdk.api.core.RequestContextValue;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
 import com.veeva.vault.sdk.api.core.VaultCollections;
 
 @UserDefinedClassInfo
 public class NestedTriggerContext implements RequestContextValue {
-	
+
+	private static final String NESTED_TRIGGER_CONTEXT = "NESTED_TRIGGERS";
+
+	// active trigger -> nesting depth; only active triggers are keys
+	@SuppressWarnings("unchecked")
+	private Map<String, Integer> depthByTrigger = VaultCollections.newMap();
 	@SuppressWarnings("unchecked")
-	private List<String> trigger = VaultCollections.newList();
+	private Map<String, Integer> suppressedByTrigger = VaultCollections.newMap();
 
-	public List<String> getTriggerList() {
-		return trigger;
+	/**
+	 * @return the guard of the current request
+	 */
+	public static NestedTriggerContext get() {
+		NestedTriggerContext context = RequestContext.get().getValue(NESTED_TRIGGER_CONTEXT, NestedTriggerContext.class);
+		if (context == null) {
+			context = new NestedTriggerContext();
+			RequestContext.get().setValue(NESTED_TRIGGER_CONTEXT, context);
+		}
+		return context;
 	}
 
-	public void add(String triggerName) {
-		this.trigger.add(triggerName);
+	/**
+	 * Marks the trigger active; call exit in a finally block
+	 *
+	 * @param triggerName name of the trigger
+	 * @return the nesting depth of the trigger, 1 for the outermost execution
+	 */
+	public int enter(String triggerName) {
+		int depth = getDepth(triggerName) + 1;
+		depthByTrigger.put(triggerName, depth);
+		return depth;
 	}
 
-	
-}
\ No newline at end of file
+	/**
+	 * Marks the trigger inactive; the suppression counts and the metadata cache counts
+	 * are logged once when the guard goes idle
+	 *
+	 * @param triggerName name of the trigger
+	 */
+	public void exit(String triggerName) {
+		int depth = getDepth(triggerName) - 1;
+		if (depth > 0) {
+			depthByTrigger.put(triggerName, depth);
+		}
+		else {
+			depthByTrigger.remove(triggerName);
+		}
+
+		if (isIdle()) {
+			if (!suppressedByTrigger.isEmpty()) {
+				Log.debug("Nested trigger suppressions by trigger: {}", suppressedByTrigger);
+				suppressedByTrigger.clear();
+			}
+			MetadataCache.logCounts();
+		}
+	}
+
+	public boolean isActive(String triggerName) {
+		return depthByTrigger.containsKey(triggerName);
+	}
+
+	/**
+	 * @return true when no guarded trigger is active, i.e. after the outermost trigger exited
+	 */
+	public boolean isIdle() {
+		return depthByTrigger.isEmpty();
+	}
+
+	/**
+	 * @param triggerName name of the trigger
+	 * @return true when the trigger is the only active trigger and is not nested in itself
+	 */
+	public boolean isOutermost(String triggerName) {
+		return depthByTrigger.size() == 1 && getDepth(triggerName) == 1;
+	}
+
+	public int getDepth(String triggerName) {
+		Integer depth = depthByTrigger.get(triggerName);
+		return depth == null ? 0 : depth;
+	}
+
+	/**
+	 * Checks whether the trigger should skip its nested work because the blocking
+	 * trigger is active, counting the suppression
+	 *
+	 * @param triggerName trigger that would do the work
+	 * @param blockingTriggerName trigger whose execution makes the work redundant
+	 * @return true when the work should be skipped
+	 */
+	public boolean suppress(String triggerName, String blockingTriggerName) {
+		if (!isActive(blockingTriggerName)) {
+			return false;
+		}
+		int count = getSuppressedCount(triggerName) + 1;
+		suppressedByTrigger.put(triggerName, count);
+		Log.debug("Nested trigger {} suppressed while {} is active ({} times in this request)", triggerName, blockingTriggerName, count);
+		return true;
+	}
+
+	public int getSuppressedCount(String triggerName) {
+		Integer count = suppressedByTrigger.get(triggerName);
+		return count == null ? 0 : count;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       ProductRestrictionContext
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped cache of the product_restriction__c values
+ * 				 of product__v records. Products are resolved in bulk with
+ * 				 one chunked contains query; the restrictions of a product
+ * 				 do not change within a transaction.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.veeva.vault.custom.util.QueryServiceUtil;
+import com.veeva.vault.custom.util.VpsVQLHelper;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class ProductRestrictionContext implements RequestContextValue {
+
+	public static final String PRODUCT_RESTRICTION = "product_restriction__c";
+	private static final String PRODUCT_RESTRICTION_CONTEXT = "PRODUCT_RESTRICTIONS";
+	private static final String VQL_PRODUCT_RESTRICTIONS = "SELECT id, " + PRODUCT_RESTRICTION + " FROM product__v "
+			+ "WHERE id CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+
+	// product id -> restriction picklist values (empty values removed)
+	@SuppressWarnings("unchecked")
+	private Map<String, List<String>> restrictionsByProductId = VaultCollections.newMap();
+	// product ids queried in this request, including the ones that were not found
+	@SuppressWarnings("unchecked")
+	private Set<String> resolvedProductIds = VaultCollections.newSet();
+
+	/**
+	 * @return the product restrictions of the current request
+	 */
+	public static ProductRestrictionContext get() {
+		ProductRestrictionContext context = RequestContext.get().getValue(PRODUCT_RESTRICTION_CONTEXT, ProductRestrictionContext.class);
+		if (context == null) {
+			context = new ProductRestrictionContext();
+			RequestContext.get().setValue(PRODUCT_RESTRICTION_CONTEXT, context);
+		}
+		return context;
+	}
+
+	/**
+	 * Resolves the restrictions of the products that are not resolved yet, with one chunked query
+	 *
+	 * @param productIds product ids
+	 */
+	@SuppressWarnings("unchecked")
+	public void prefetch(Collection<String> productIds) {
+		Set<String> missingIds = VaultCollections.newSet();
+		for (String productId : productIds) {
+			if (productId != null && resolvedProductIds.add(productId)) {
+				missingIds.add(productId);
+			}
+		}
+
+		for (String query : VpsVQLHelper.buildChunkedVQL(VQL_PRODUCT_RESTRICTIONS, missingIds, true)) {
+			QueryServiceUtil.query(query).streamResults().forEach(queryResult -> {
+				List<String> restrictions = VaultCollections.newList();
+				List<String> values = queryResult.getValue(PRODUCT_RESTRICTION, ValueType.PICKLIST_VALUES);
+				if (values != null) {
+					for (String s : values) {
+						if (s != null && !s.equals("")) restrictions.add(s);
+					}
+				}
+				restrictionsByProductId.put(queryResult.getValue("id", ValueType.STRING), restrictions);
+			});
+		}
+	}
+
+	/**
+	 * @param productId product id
+	 * @return a copy of the restrictions of the product (empty when it has none), or null when the product does not exist
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> getRestrictions(String productId) {
+		if (!resolvedProductIds.contains(productId)) {
+			prefetch(VaultCollections.asList(productId));
+		}
+		List<String> restrictions = restrictionsByProductId.get(productId);
+		if (restrictions == null) {
+			return null;
+		}
+
+		List<String> result = VaultCollections.newList();
+		result.addAll(restrictions);
+		return result;
+	}
+}
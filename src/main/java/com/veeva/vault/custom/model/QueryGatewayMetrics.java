@@ -0,0 +1,95 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       QueryGatewayMetrics
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped query counts and elapsed time per query
+ * 				 transport, used to report the latency of the in process
+ * 				 and HTTP query gateways side by side.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class QueryGatewayMetrics implements RequestContextValue {
+
+	private static final String QUERY_GATEWAY_METRICS_CONTEXT = "QUERY_GATEWAY_METRICS";
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Long> elapsedMillis = VaultCollections.newMap();
+	@SuppressWarnings("unchecked")
+	private Map<String, Integer> queryCounts = VaultCollections.newMap();
+	@SuppressWarnings("unchecked")
+	private Map<String, Integer> rowCounts = VaultCollections.newMap();
+
+	/**
+	 * @return the metrics of the current request
+	 */
+	public static QueryGatewayMetrics get() {
+		QueryGatewayMetrics metrics = RequestContext.get().getValue(QUERY_GATEWAY_METRICS_CONTEXT, QueryGatewayMetrics.class);
+		if (metrics == null) {
+			metrics = new QueryGatewayMetrics();
+			RequestContext.get().setValue(QUERY_GATEWAY_METRICS_CONTEXT, metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Records one query and logs its latency next to the average of the other transports
+	 *
+	 * @param transport the gateway transport
+	 * @param startTime when the query started
+	 * @param rowCount number of rows read
+	 */
+	public void record(String transport, LocalDateTime startTime, int rowCount) {
+		long millis = ChronoUnit.MILLIS.between(startTime, LocalDateTime.now());
+		elapsedMillis.put(transport, getElapsedMillis(transport) + millis);
+		queryCounts.put(transport, getQueryCount(transport) + 1);
+		rowCounts.put(transport, getRowCount(transport) + rowCount);
+
+		if (Log.isDebugEnabled()) {
+			StringBuilder averages = new StringBuilder();
+			for (String name : queryCounts.keySet()) {
+				averages.append(" ").append(name).append("=").append(getAverageMillis(name)).append("ms");
+			}
+			Log.debug("Query [{}] {} rows in {} ms; request averages:{}", transport, rowCount, millis, averages.toString());
+		}
+	}
+
+	public long getElapsedMillis(String transport) {
+		Long millis = elapsedMillis.get(transport);
+		return millis == null ? 0 : millis;
+	}
+
+	public int getQueryCount(String transport) {
+		Integer count = queryCounts.get(transport);
+		return count == null ? 0 : count;
+	}
+
+	public int getRowCount(String transport) {
+		Integer count = rowCounts.get(transport);
+		return count == null ? 0 : count;
+	}
+
+	public long getAverageMillis(String transport) {
+		int count = getQueryCount(transport);
+		return count == 0 ? 0 : getElapsedMillis(transport) / count;
+	}
+}
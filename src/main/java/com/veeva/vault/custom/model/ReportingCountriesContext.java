@@ -0,0 +1,167 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       ReportingCountriesContext
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped, incremental maintainer of the sorted
+ * 				 submission reporting_countries__c picklist. Added and
+ * 				 removed country values are applied to the current value
+ * 				 of the submission; the current value is read with one
+ * 				 chunked contains query, only for submissions whose value
+ * 				 is not known yet in the request.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.veeva.vault.custom.util.QueryServiceUtil;
+import com.veeva.vault.custom.util.VpsVQLHelper;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class ReportingCountriesContext implements RequestContextValue {
+
+	public static final String REPORTING_COUNTRIES = "reporting_countries__c";
+	private static final String REPORTING_COUNTRIES_CONTEXT = "REPORTING_COUNTRIES";
+	private static final String VQL_REPORTING_COUNTRIES = "SELECT id, " + REPORTING_COUNTRIES + " FROM submission__v "
+			+ "WHERE id CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+
+	// submission id -> sorted reporting country picklist values
+	@SuppressWarnings("unchecked")
+	private Map<String, List<String>> countriesBySubmissionId = VaultCollections.newMap();
+
+	/**
+	 * @return the reporting countries of the current request
+	 */
+	public static ReportingCountriesContext get() {
+		ReportingCountriesContext context = RequestContext.get().getValue(REPORTING_COUNTRIES_CONTEXT, ReportingCountriesContext.class);
+		if (context == null) {
+			context = new ReportingCountriesContext();
+			RequestContext.get().setValue(REPORTING_COUNTRIES_CONTEXT, context);
+		}
+		return context;
+	}
+
+	/**
+	 * Sets the current value of a submission, e.g. from the trigger record, so it is not queried
+	 *
+	 * @param submissionId submission id
+	 * @param reportingCountries current reporting country picklist values (optional)
+	 */
+	@SuppressWarnings("unchecked")
+	public void seed(String submissionId, List<String> reportingCountries) {
+		List<String> countries = VaultCollections.newList();
+		if (reportingCountries != null) {
+			for (String country : reportingCountries) {
+				insertSorted(countries, country);
+			}
+		}
+		countriesBySubmissionId.put(submissionId, countries);
+	}
+
+	/**
+	 * Reads the current value of the submissions that are not known yet
+	 *
+	 * @param submissionIds submission ids
+	 */
+	@SuppressWarnings("unchecked")
+	public void prefetch(Collection<String> submissionIds) {
+		Set<String> missingIds = VaultCollections.newSet();
+		for (String submissionId : submissionIds) {
+			if (!countriesBySubmissionId.containsKey(submissionId)) {
+				missingIds.add(submissionId);
+				countriesBySubmissionId.put(submissionId, VaultCollections.newList());
+			}
+		}
+
+		for (String query : VpsVQLHelper.buildChunkedVQL(VQL_REPORTING_COUNTRIES, missingIds, true)) {
+			QueryServiceUtil.query(query).streamResults().forEach(queryResult -> {
+				List<String> values = queryResult.getValue(REPORTING_COUNTRIES, ValueType.PICKLIST_VALUES);
+				seed(queryResult.getValue("id", ValueType.STRING), values);
+			});
+		}
+	}
+
+	/**
+	 * Applies a delta to the sorted value of the submission
+	 *
+	 * @param submissionId submission id
+	 * @param added country picklist values to add (optional)
+	 * @param removed country picklist values to remove (optional)
+	 * @return a sorted copy of the new value, for the submission record
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> apply(String submissionId, Collection<String> added, Collection<String> removed) {
+		if (!countriesBySubmissionId.containsKey(submissionId)) {
+			prefetch(VaultCollections.asList(submissionId));
+		}
+		List<String> countries = countriesBySubmissionId.get(submissionId);
+
+		if (added != null) {
+			for (String country : added) {
+				insertSorted(countries, country);
+			}
+		}
+		if (removed != null) {
+			for (String country : removed) {
+				int index = indexOf(countries, country);
+				if (index >= 0) {
+					countries.remove(index);
+				}
+			}
+		}
+
+		List<String> result = VaultCollections.newList();
+		result.addAll(countries);
+		return result;
+	}
+
+	private static void insertSorted(List<String> countries, String country) {
+		if (country == null || country.isEmpty()) {
+			return;
+		}
+		int index = indexOf(countries, country);
+		if (index < 0) {
+			countries.add(-(index + 1), country);
+		}
+	}
+
+	/**
+	 * Binary search of the sorted list
+	 *
+	 * @return the index of the value, or -(insertion point) - 1 when it is not in the list
+	 */
+	private static int indexOf(List<String> countries, String country) {
+		int low = 0;
+		int high = countries.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compare = countries.get(middle).compareTo(country);
+			if (compare < 0) {
+				low = middle + 1;
+			}
+			else if (compare > 0) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+}
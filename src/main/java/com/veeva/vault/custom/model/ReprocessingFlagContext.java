@@ -0,0 +1,197 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       ReprocessingFlagContext
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Request scoped collector of the parents (application__v,
+ * 				 submission__v) whose country security must be reprocessed.
+ * 				 Triggers register parents instead of saving them; the
+ * 				 outermost trigger flushes, while still guarded, one deduplicated batch save per
+ * 				 object type that sets country_security_processing_status__c
+ * 				 to reprocessing_required__c, the flag picked up by the
+ * 				 country security reprocessing job. A parent is flagged at
+ * 				 most once per request unless other fields are written with it.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.sdk.api.core.RequestContext;
+import com.veeva.vault.sdk.api.core.RequestContextValue;
+import com.veeva.vault.sdk.api.core.RollbackException;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.data.Record;
+import com.veeva.vault.sdk.api.data.RecordService;
+
+@UserDefinedClassInfo
+public class ReprocessingFlagContext implements RequestContextValue {
+
+	public static final String COUNTRY_PROCESSING = "country_security_processing_status__c";
+	public static final String REPROCESSING_REQUIRED = "reprocessing_required__c";
+	public static final String PROCESSED = "processed__c";
+	private static final String REPROCESSING_FLAG_CONTEXT = "REPROCESSING_FLAGS";
+	private static final int BATCH_SIZE = 500;
+
+	// object name -> parent id -> record to save
+	@SuppressWarnings("unchecked")
+	private Map<String, Map<String, Record>> pendingByObject = VaultCollections.newMap();
+	// object name + ":" + id of the parents already flagged in this request
+	@SuppressWarnings("unchecked")
+	private Set<String> flagged = VaultCollections.newSet();
+	private int skipped = 0;
+
+	/**
+	 * @return the collector of the current request
+	 */
+	public static ReprocessingFlagContext get() {
+		ReprocessingFlagContext context = RequestContext.get().getValue(REPROCESSING_FLAG_CONTEXT, ReprocessingFlagContext.class);
+		if (context == null) {
+			context = new ReprocessingFlagContext();
+			RequestContext.get().setValue(REPROCESSING_FLAG_CONTEXT, context);
+		}
+		return context;
+	}
+
+	/**
+	 * Registers a parent for reprocessing; skipped when the parent is already flagged in this request
+	 *
+	 * @param objectName parent object name
+	 * @param id parent id
+	 */
+	public void register(String objectName, String id) {
+		if (id == null || id.isEmpty()) {
+			return;
+		}
+		if (flagged.contains(objectName + ":" + id) && !isPending(objectName, id)) {
+			skipped++;
+			return;
+		}
+		getRecord(objectName, id);
+	}
+
+	/**
+	 * Registers a parent for reprocessing and returns the record that is saved on
+	 * flush, so other fields of the parent are written in the same save
+	 *
+	 * @param objectName parent object name
+	 * @param id parent id
+	 * @return the pending record of the parent
+	 */
+	@SuppressWarnings("unchecked")
+	public Record getRecord(String objectName, String id) {
+		Map<String, Record> pending = pendingByObject.get(objectName);
+		if (pending == null) {
+			pending = VaultCollections.newMap();
+			pendingByObject.put(objectName, pending);
+		}
+
+		Record record = pending.get(id);
+		if (record == null) {
+			record = ServiceLocator.locate(RecordService.class).newRecord(objectName);
+			record.setValue("id", id);
+			record.setValue(COUNTRY_PROCESSING, VaultCollections.asList(REPROCESSING_REQUIRED));
+			pending.put(id, record);
+		}
+		return record;
+	}
+
+	/**
+	 * Records a parent whose flag was set in place by its own before trigger, so it
+	 * is neither saved again nor re-registered in this request
+	 *
+	 * @param objectName parent object name
+	 * @param id parent id
+	 */
+	public void markFlagged(String objectName, String id) {
+		flagged.add(objectName + ":" + id);
+		Map<String, Record> pending = pendingByObject.get(objectName);
+		if (pending != null) {
+			pending.remove(id);
+		}
+	}
+
+	/**
+	 * Saves the pending parents when called by the outermost guarded trigger before it
+	 * exits, so the triggers fired by the saves run nested in it and are suppressed as usual.
+	 * Parents registered by those nested triggers are saved in a further pass.
+	 *
+	 * @param triggerName name of the calling trigger
+	 * @return number of parents saved
+	 */
+	public int flushIfOutermost(String triggerName) {
+		if (!NestedTriggerContext.get().isOutermost(triggerName)) {
+			return 0;
+		}
+		int saved = 0;
+		while (!pendingByObject.isEmpty()) {
+			saved += flush();
+		}
+		return saved;
+	}
+
+	/**
+	 * Saves the pending parents, one batch save per object type.
+	 * Rollback the entire transaction when encountering errors.
+	 *
+	 * @return number of parents saved
+	 */
+	@SuppressWarnings("unchecked")
+	public int flush() {
+		// detach the pending parents first, the saves fire triggers that may flush again
+		Map<String, Map<String, Record>> flushing = pendingByObject;
+		pendingByObject = VaultCollections.newMap();
+		int saved = 0;
+
+		for (String objectName : flushing.keySet()) {
+			List<Record> listRecord = VaultCollections.newList();
+			for (String id : flushing.get(objectName).keySet()) {
+				flagged.add(objectName + ":" + id);
+				listRecord.add(flushing.get(objectName).get(id));
+
+				if (listRecord.size() == BATCH_SIZE) {
+					saveRecords(listRecord);
+					saved += listRecord.size();
+					listRecord = VaultCollections.newList();
+				}
+			}
+			if (!listRecord.isEmpty()) {
+				saveRecords(listRecord);
+				saved += listRecord.size();
+			}
+		}
+
+		if (saved > 0 || skipped > 0) {
+			Log.debug("Reprocessing flags saved: {}, already flagged in this request: {}", saved, skipped);
+		}
+		return saved;
+	}
+
+	private boolean isPending(String objectName, String id) {
+		Map<String, Record> pending = pendingByObject.get(objectName);
+		return pending != null && pending.containsKey(id);
+	}
+
+	private void saveRecords(List<Record> listRecord) {
+		ServiceLocator.locate(RecordService.class).batchSaveRecords(listRecord)
+			.onErrors(batchOperationErrors -> {
+				batchOperationErrors.stream().findFirst().ifPresent(error -> {
+					String errMsg = error.getError().getMessage();
+					throw new RollbackException("OPERATION_NOT_ALLOWED", "Unable to save record: " + errMsg);
+				});
+			})
+			.execute();
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * --------------------------------------------------------------------
+ * Model:       RoleMembership
+ * Author:      achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:  Users and groups assigned to one document role. Ids are
+ * 				 kept as plain string sets; groups expanded to users are
+ * 				 added to the user ids.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.model;
+
+import java.util.List;
+import java.util.Set;
+
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+@UserDefinedClassInfo
+public class RoleMembership {
+	@SuppressWarnings("unchecked")
+	private Set<String> userIds = VaultCollections.newSet();
+	@SuppressWarnings("unchecked")
+	private Set<String> groupIds = VaultCollections.newSet();
+
+	public Set<String> getUserIds() {
+		return userIds;
+	}
+	public Set<String> getGroupIds() {
+		return groupIds;
+	}
+	public void addUser(String userId) {
+		if (userId != null) {
+			userIds.add(userId);
+		}
+	}
+	public void addGroup(String groupId) {
+		if (groupId != null) {
+			groupIds.add(groupId);
+		}
+	}
+	public boolean isEmpty() {
+		return userIds.isEmpty() && groupIds.isEmpty();
+	}
+
+	/**
+	 * @return the members in the "user:{id}" / "group:{id}" form used by the document roles API
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> toUsersAndGroups() {
+		List<String> usersAndGroups = VaultCollections.newList();
+		for (String groupId : groupIds) {
+			usersAndGroups.add("group:" + groupId);
+		}
+		for (String userId : userIds) {
+			usersAndGroups.add("user:" + userId);
+		}
+		return usersAndGroups;
+	}
+}
@@ -20,13 +20,7 @@
  */
 package com.veeva.vault.custom.model;
 
-import com.veeva.vault.custom.services.VpsUserRoleTemplateProvisionService;
-import com.veeva.vault.custom.util.Log;
 import com.veeva.vault.sdk.api.core.*;
-import com.veeva.vault.sdk.api.data.Record;
-import com.veeva.vault.sdk.api.data.RecordService;
-import com.veeva.vault.sdk.api.picklist.Picklist;
-import com.veeva.vault.sdk.api.picklist.PicklistService;
 import com.veeva.vault.sdk.api.query.QueryResponse;
 import com.veeva.vault.sdk.api.query.QueryResult;
 import com.veeva.vault.sdk.api.query.QueryService;
@@ -34,7 +28,6 @@ import com.veeva.vault.sdk.api.query.QueryService;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Inner class for the user role provisioning setup data
@@ -49,8 +42,6 @@ public class UserRoleProvisioningSetupData {
     private String countryAPIName; // optional - api name of the country field on user role setup object
     private List<UserRoleTemplateMapping> urtm;
 
-    private static final int BATCH_SIZE = 500;
-
     public UserRoleProvisioningSetupData(String templateGroup) {
         String SINGLE_QUOTE = String.valueOf((char) 39);
 
@@ -71,9 +62,7 @@ public class UserRoleProvisioningSetupData {
             setCountryAPIName(qr.getValue("country_api_name__c", ValueType.STRING));
 
             List<String> listURS = qr.getValue("user_role_setup_object__c", ValueType.PICKLIST_VALUES);
-            PicklistService picklistService = ServiceLocator.locate(PicklistService.class);
-            Picklist picklistURSObject = picklistService.getPicklist("user_role_setup_object__c");
-            setObjectName(picklistURSObject.getPicklistValue(listURS.get(0)).getLabel());
+            setObjectName(MetadataCache.get().getPicklistLabel("user_role_setup_object__c", listURS.get(0)));
             setObjectNamePL(listURS.get(0));
         }
 
@@ -88,71 +77,6 @@ public class UserRoleProvisioningSetupData {
         }
     }
 
-    /**
-     * Query user role setup and remove existing users
-     *
-     * @param setUsers
-     * 			Set of user ids to check
-     *
-     * @param recTemplate
-     * 			Record for the current template record
-     *
-     */
-    public void deleteExistingRecords(Set<String> setUsers, Record recTemplate) {
-        List<Record> listRecord = VaultCollections.newList();
-
-        Map<String,UserRoleTemplateMapping> urtmf = getURTMByURSField();
-
-        // Query all user role setup records for the current user (will later find the matches). Ignore country field.
-
-        String query = "select id,";
-        for (String s : urtmf.keySet())
-            query += s + ",";
-
-        query = query.substring(0, query.length()-1);
-        query += " from " + objectName + " where " + userAPIName + " contains (";
-
-        for (String s : setUsers) query += "'" + s + "'" + ",";
-        query = query.substring(0, query.length()-1);
-        query += ")";
-
-        Log.debug("Executing VQL: " + query);
-        QueryService queryService = ServiceLocator.locate(QueryService.class);
-        QueryResponse queryResponse = queryService.query(query);
-        Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
-
-        RecordService recordService = ServiceLocator.locate(RecordService.class);
-
-        /*
-         * Loop through the user role setup records, find if there is an exact match on all sharing fields in the record
-         * 1. While loop of all user role setup records
-         *  2. For loop for the fields on the template to set the data
-         */
-        int count = 0;
-        while (iterator.hasNext()) {
-            QueryResult queryResult = iterator.next();
-            // 2.9.1 Start - Move to UDS to unserve memories
-            boolean bDelete = ServiceLocator
-                    .locate(VpsUserRoleTemplateProvisionService.class)
-                    .isDelete(urtmf, queryResult, recTemplate, null, null);
-            // 2.9.1 End
-
-            if (bDelete) {
-                // the current template and user role setup record are exact match, lets delete it
-                listRecord.add(recordService.newRecordWithId(objectName,queryResult.getValue("id", ValueType.STRING)));
-
-                if (listRecord.size() == BATCH_SIZE) {
-                    deleteRecords(listRecord);
-                    listRecord = VaultCollections.newList();
-                }
-            }
-            count++;
-        }
-        Log.debug("Total Existing URS Record:" + count);
-        // Process records outside the batch
-        if (listRecord.size() > 0 ) deleteRecords(listRecord);
-    }
-
     public String getTemplateGroup() {
         return templateGroup;
     }
@@ -215,24 +139,4 @@ public class UserRoleProvisioningSetupData {
 
         return m;
     }
-    /**
-     * Perform a DML save operation on a list of records.
-     * Rollback the entire transaction when encountering errors.
-     *
-     * @param listRecord
-     *            - list of records to delete
-     */
-    private void deleteRecords(List<Record> listRecord) {
-        Log.debug("Deleting records of size: " + listRecord.size());
-        RecordService recordService = ServiceLocator.locate(RecordService.class);
-
-        recordService.batchDeleteRecords(listRecord)
-                .onErrors(batchOperationErrors -> {
-                    batchOperationErrors.stream().findFirst().ifPresent(error -> {
-                        String errMsg = error.getError().getMessage();
-                        throw new RollbackException("OPERATION_NOT_ALLOWED", "Unable to save record: " + errMsg);
-                    });
-                })
-                .execute();
-    }
 }
\ No newline at end of file
@@ -65,7 +65,7 @@ public class BDLGenerateMultiAgreementTask {
 	
 	public void execute() {
 		final String methodName = BDLGenerateMultiAgreementTask.class.toString() + ".execute()";
-		Log.entry("******** " + methodName + " ********");
+		Log.entry("******** {} ********", methodName);
 		// Step 1. Retrieve Applicable Records
 		Set<RecordChange> applicableRecords = retrieveAllApplicableRecords(recordTriggerContext);
 		if (applicableRecords.size() > 0) {
@@ -82,7 +82,7 @@ public class BDLGenerateMultiAgreementTask {
 			 
 		}
 		
-		Log.exit("******** " + methodName + " ********");
+		Log.exit("******** {} ********", methodName);
 	}
 	
 	private Set<RecordChange> retrieveAllApplicableRecords(RecordTriggerContext recordTriggerContext) {
@@ -100,7 +100,7 @@ public class BDLGenerateMultiAgreementTask {
 				}
 			}
 		}
-		Log.exit(methodName + ", Applicable Record Size:" + applicableRecords.size());
+		Log.exit("{}, Applicable Record Size:{}", methodName, applicableRecords.size());
 		return applicableRecords;
 	}
 
@@ -180,7 +180,7 @@ public class BDLGenerateMultiAgreementTask {
 		
 		for (String queryStatement:queryList) {
 			QueryResponse queryResponse = QueryServiceUtil.query(queryStatement);
-			Log.debug("Executing: " + queryStatement);
+			Log.debug("Executing: {}", queryStatement);
 			Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
 			while (iterator.hasNext()) {
 				QueryResult queryResult = iterator.next();
@@ -456,7 +456,7 @@ public class BDLGenerateMultiAgreementTask {
 		RecordService recordService = ServiceLocator.locate(RecordService.class);
 		List<Record> recordList = VaultCollections.newList();
 		String objectId = inputRecord.getNew().getValue("id", ValueType.STRING);
-		Log.debug("Processing record: " + objectId);
+		Log.debug("Processing record: {}", objectId);
 		QueryResponse queryResponse = QueryServiceUtil.query(query);
 		Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
 		int taskGeneratedCount = 0;
@@ -489,7 +489,7 @@ public class BDLGenerateMultiAgreementTask {
 								Record record = recordService.newRecord(TASK_OBJECT_NAME);
 								record.setValue("object_type__v", objectType);
 								record.setValue("multi_agreement_activity__c", objectId);
-								Log.debug("Object Type:" +  objectType);
+								Log.debug("Object Type:{}", objectType);
 								QueryResult subQueryResult = subIterator.next();
 								if (isDistinct) {
 									List<String> listofFields = VaultCollections.newList();
@@ -502,14 +502,14 @@ public class BDLGenerateMultiAgreementTask {
 									String key = String.join("-", listofFields);
 									if (!distinctRecordSet.contains(key)) {
 										distinctRecordSet.add(key);
-										Log.debug("Adding record:" + key);
+										Log.debug("Adding record:{}", key);
 										recordList.add(record);	
 									}
 									
 								} else {
 									for (String fieldName:subMapping.keySet()) {
 										record.setValue(subMapping.get(fieldName), subQueryResult.getValue(fieldName, ValueType.STRING));
-										Log.debug("Setting: " + subMapping.get(fieldName) + "," + subQueryResult.getValue(fieldName, ValueType.STRING));
+										Log.debug("Setting: {},{}", subMapping.get(fieldName), subQueryResult.getValue(fieldName, ValueType.STRING));
 									}
 									recordList.add(record);	
 								}
@@ -10,6 +10,7 @@
  * Revision:
  * 2019-02-12: Refactored code to use UDC
  * 2020-05-01: 2.8 Release. Added related object support
+ * 2023-03-14: Country picklist values resolved with the request country index (CountryIndex)
  *---------------------------------------------------------------------
  * Copyright (c) 2020 Veeva Systems Inc.  All Rights Reserved.
  *      This code is based on pre-existing content developed and
@@ -23,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.veeva.vault.custom.model.Country;
+import com.veeva.vault.custom.model.CountryIndex;
 import com.veeva.vault.custom.model.SDKSetting;
 import com.veeva.vault.custom.util.BDLUtil;
 import com.veeva.vault.custom.util.Log;
@@ -50,7 +53,7 @@ public class BDLPopulateMultiAgreementTaskQuery {
 
 	public void execute() {
 		final String methodName = BDLPopulateMultiAgreementTaskQuery.class.toString() + ".execute()";
-		Log.entry("******** " + methodName + " ********");
+		Log.entry("******** {} ********", methodName);
 		
 		// Step 1. Retrieve Applicable Records
 		Set<RecordChange> applicableRecords = retrieveAllApplicableRecords();
@@ -64,7 +67,7 @@ public class BDLPopulateMultiAgreementTaskQuery {
 			
 		}
 		
-		Log.exit("******** " + methodName + " ********");
+		Log.exit("******** {} ********", methodName);
 	}
 	
 	private Set<RecordChange> retrieveAllApplicableRecords() {
@@ -83,7 +86,7 @@ public class BDLPopulateMultiAgreementTaskQuery {
 				//if (TriggerUtil.fieldChanged(inputRecord, FIELD_LIFECYCLE_STATE, ValueType.STRING, recordTriggerContext.getRecordEvent())) {}
 			}
 		}
-		Log.exit(methodName + ", Applicable Record Size:" + applicableRecords.size());
+		Log.exit("{}, Applicable Record Size:{}", methodName, applicableRecords.size());
 		return applicableRecords;
 	}
 
@@ -97,7 +100,7 @@ public class BDLPopulateMultiAgreementTaskQuery {
 			SDKSetting setting = BDLUtil.retrieveSDKSetting(sdkSettings, applicableRecord, activityObjectType);
 			
 			if (setting != null) {
-				Log.debug("Setting Found: [" + setting.getName() + "]");
+				Log.debug("Setting Found: [{}]", setting.getName());
 				String criteriaQuery = resolveInputRecordTokens(applicableRecord, setting.getCriteriaVQL());
 				applicableRecord.getNew().setValue("long_query__c", criteriaQuery);
 			}
@@ -192,7 +195,7 @@ public class BDLPopulateMultiAgreementTaskQuery {
 				token = token.replace("PICKLIST[", "").replace("]", "");
 				List<String> tokenValue = inputRecord.getNew().getValue(token, ValueType.PICKLIST_VALUES);
 				text = StringUtils.replaceAll(text, "\\$\\{PICKLIST\\[" + token + "\\]\\}", "'" + String.join("','", tokenValue) + "'");
-				Log.debug("Picklist Conversion Result: " + text );
+				Log.debug("Picklist Conversion Result: {}", text);
 			// 2.8 Release - ignore the . token.  This will be handled in the actual generation of task.
 			} else if (token.equals("DISTINCT") || token.contains(".")) { 
 				// do nothing			
@@ -200,9 +203,12 @@ public class BDLPopulateMultiAgreementTaskQuery {
 				// 343: Add multi-country picklist to filtering.  Convert picklist to Country object id
 				// The value must be the country object id. 
 				List<String> countries = inputRecord.getNew().getValue("bdl_multi_agreement_countries__c", ValueType.PICKLIST_VALUES);		
+				CountryIndex countryIndex = CountryIndex.get();
 				for (int i = 0; i < countries.size(); i++) {
-					// countries picklist uses id value: 000sc0d000012__c.  Transform it to 000SC0D000012
-					countries.set(i, countries.get(i).substring(0, countries.get(i).length()-3).toUpperCase());
+					// countries picklist uses id value: 000sc0d000012__c.  Resolve it to the country id 000SC0D000012,
+					// values the index does not know are transformed as before
+					Country country = countryIndex.getByPicklistValue(countries.get(i));
+					countries.set(i, country != null ? country.getId() : countries.get(i).substring(0, countries.get(i).length()-3).toUpperCase());
 				}
 				text = StringUtils.replaceAll(text, "\\$\\{bdl_multi_agreement_countries__c\\}", "('" + String.join("','", countries) + "')");
 			} else {
@@ -15,16 +15,16 @@
 package com.veeva.vault.custom.processer;
 
 
-import com.veeva.vault.custom.util.VpsVQLHelper;
+import com.veeva.vault.custom.model.DocumentVersion;
+import com.veeva.vault.custom.model.DocumentVersionCatalog;
 import com.veeva.vault.custom.util.api.VpsAPIClient;
 import com.veeva.vault.sdk.api.core.LogService;
 import com.veeva.vault.sdk.api.core.ServiceLocator;
-import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.StringUtils;
 import com.veeva.vault.sdk.api.core.VaultCollections;
-import com.veeva.vault.sdk.api.query.QueryResponse;
 import com.veeva.vault.sdk.api.queue.*;
 
-import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 
 @MessageProcessorInfo()
@@ -32,19 +32,32 @@ public class VpsDocIdMessageProcessor implements MessageProcessor {
 
     private static final String DOCFIELD_EXPORT_FILENAME = "export_filename__v";
     private static final String DOCFIELD_BASE30_DOCUMENT_ID = "document_id__c";
-    private static final String DOCFIELD_MAJOR_VERSION_NUMBER = "major_version_number__v";
-    private static final String DOCFIELD_MINOR_VERSION_NUMBER = "minor_version_number__v";
-    private static final String DOCFIELD_ID = "id";
-    private static final String DOCFIELD_BINDER = "binder__v";
+    private static final String MESSAGE_ITEM_DELIMITER = ":";
 
 
+    /**
+     * The message names one document in its docId and base30DocumentId attributes,
+     * and can carry more documents as "docId:base30DocumentId" items.
+     */
+    @SuppressWarnings("unchecked")
     public void execute(MessageContext context) {
         LogService logger = ServiceLocator.locate(LogService.class);
         logger.info("Initialize processor VpsDocIdMessageProcessor");
-        String docId = context.getMessage().getAttribute("docId", MessageAttributeValueType.STRING);
-        String base30DocumentId = context.getMessage().getAttribute("base30DocumentId", MessageAttributeValueType.STRING);
-        String apiConnection = context.getMessage().getAttribute("apiConnection", MessageAttributeValueType.STRING);
-        updateAllVersions(docId, base30DocumentId, apiConnection);
+        Message message = context.getMessage();
+        String docId = message.getAttribute("docId", MessageAttributeValueType.STRING);
+        String apiConnection = message.getAttribute("apiConnection", MessageAttributeValueType.STRING);
+
+        Map<String, String> base30DocumentIds = VaultCollections.newMap();
+        if (docId != null) {
+            base30DocumentIds.put(docId, message.getAttribute("base30DocumentId", MessageAttributeValueType.STRING));
+        }
+        for (String item : message.getMessageItems()) {
+            List<String> values = StringUtils.split(item, MESSAGE_ITEM_DELIMITER);
+            if (values.size() == 2) {
+                base30DocumentIds.put(values.get(0), values.get(1));
+            }
+        }
+        updateAllVersions(base30DocumentIds, apiConnection);
     }
 
     /**
@@ -53,47 +66,67 @@ public class VpsDocIdMessageProcessor implements MessageProcessor {
      * @param docId
      * @param base30DocumentId
      */
+    @SuppressWarnings("unchecked")
     public void updateAllVersions(String docId, String base30DocumentId, String apiConnection) {
+        Map<String, String> base30DocumentIds = VaultCollections.newMap();
+        base30DocumentIds.put(docId, base30DocumentId);
+        updateAllVersions(base30DocumentIds, apiConnection);
+    }
+
+    /**
+     * Sets the base30 document id on the versions of each document that do not have one yet.
+     * The versions of all documents are read with one query (see VpsAPIClient.retrieveDocumentVersions).
+     *
+     * @param base30DocumentIds base30 document id by document id
+     */
+    @SuppressWarnings("unchecked")
+    public void updateAllVersions(Map<String, String> base30DocumentIds, String apiConnection) {
 
-        VpsVQLHelper vqlHelper = new VpsVQLHelper();
         VpsAPIClient apiClient = new VpsAPIClient(apiConnection);
         LogService logger = ServiceLocator.locate(LogService.class);
-        
-        vqlHelper.appendVQL("SELECT " + DOCFIELD_MAJOR_VERSION_NUMBER + "," +
-                DOCFIELD_MINOR_VERSION_NUMBER + "," + DOCFIELD_BASE30_DOCUMENT_ID +","+ DOCFIELD_BINDER);
-        vqlHelper.appendVQL(" FROM " + "allversions documents");
-        vqlHelper.appendVQL(" WHERE " + DOCFIELD_ID + "=" + docId);
-        QueryResponse versionResponse = vqlHelper.runVQL();
-        //update previous versions one by one
-        versionResponse.streamResults().forEach(versionResult -> {
-            BigDecimal majorVersionNumber = versionResult.getValue(DOCFIELD_MAJOR_VERSION_NUMBER, ValueType.NUMBER);
-            BigDecimal minorVersionNumber = versionResult.getValue(DOCFIELD_MINOR_VERSION_NUMBER, ValueType.NUMBER);
-            String existingDocId = getNotNullValue(versionResult.getValue(DOCFIELD_BASE30_DOCUMENT_ID, ValueType.STRING));
-            boolean isBinder = versionResult.getValue(DOCFIELD_BINDER, ValueType.BOOLEAN);
 
-            Map<String, String> documentFieldsToUpdate = VaultCollections.newMap();
-            documentFieldsToUpdate.put(DOCFIELD_BASE30_DOCUMENT_ID, base30DocumentId);
-            documentFieldsToUpdate.put(DOCFIELD_EXPORT_FILENAME, base30DocumentId);
+        //collect the versions that need an update and send them as one batch per document type
+        Map<String, Map<String, String>> documentUpdates = VaultCollections.newMap();
+        Map<String, Map<String, String>> binderUpdates = VaultCollections.newMap();
+        Map<String, List<DocumentVersion>> versionsByDocId = apiClient.retrieveDocumentVersions(base30DocumentIds.keySet());
+        for (String docId : versionsByDocId.keySet()) {
+            String base30DocumentId = base30DocumentIds.get(docId);
+            for (DocumentVersion version : versionsByDocId.get(docId)) {
+                if (getNotNullValue(version.getBase30DocumentId()).equals("")) {
+                    Map<String, String> documentFieldsToUpdate = VaultCollections.newMap();
+                    documentFieldsToUpdate.put(DOCFIELD_BASE30_DOCUMENT_ID, base30DocumentId);
+                    documentFieldsToUpdate.put(DOCFIELD_EXPORT_FILENAME, base30DocumentId);
 
-            if (existingDocId.equals("")) {
-                boolean updateSuccess = false;
-                if (isBinder) {
-                    updateSuccess = apiClient.updateBinderFields(docId, majorVersionNumber.toString(),
-                            minorVersionNumber.toString(), documentFieldsToUpdate);
-                } else {
-                    updateSuccess = apiClient.updateDocumentFields(docId, majorVersionNumber.toString(),
-                            minorVersionNumber.toString(), documentFieldsToUpdate);
-                }
-                if (!updateSuccess) {
-                    logger.error("Failed to update binder/document with id {}", docId + "_" + majorVersionNumber +
-                            "_" + minorVersionNumber);
-                } else {
-                    logger.info("Successfully updated binder/document with id {}", docId + "_" + majorVersionNumber +
-                            "_" + minorVersionNumber);
+                    if (version.isBinder()) {
+                        binderUpdates.put(version.getVersionKey(), documentFieldsToUpdate);
+                    } else {
+                        documentUpdates.put(version.getVersionKey(), documentFieldsToUpdate);
+                    }
                 }
             }
+        }
 
-        });
+        Map<String, Boolean> results = VaultCollections.newMap();
+        if (!binderUpdates.isEmpty()) {
+            results.putAll(apiClient.updateBinderFields(binderUpdates));
+        }
+        if (!documentUpdates.isEmpty()) {
+            results.putAll(apiClient.updateDocumentFields(documentUpdates));
+        }
+        if (!results.isEmpty()) {
+            //the versions are cached for the request; drop the updated documents so a later read is fresh
+            DocumentVersionCatalog versionCatalog = DocumentVersionCatalog.get();
+            for (String docId : versionsByDocId.keySet()) {
+                versionCatalog.invalidate(docId);
+            }
+        }
+        for (String versionKey : results.keySet()) {
+            if (!results.get(versionKey)) {
+                logger.error("Failed to update binder/document with id {}", versionKey);
+            } else {
+                logger.info("Successfully updated binder/document with id {}", versionKey);
+            }
+        }
     }
 
     public String getNotNullValue(String value) {
@@ -14,12 +14,13 @@
  */
 package com.veeva.vault.custom.services;
 
+import com.veeva.vault.custom.model.DispatchMetadataContext;
+import com.veeva.vault.custom.model.MetadataCache;
 import com.veeva.vault.sdk.api.core.*;
 import com.veeva.vault.sdk.api.data.Record;
 import com.veeva.vault.sdk.api.group.Group;
+import com.veeva.vault.sdk.api.group.GetGroupsResponse;
 import com.veeva.vault.sdk.api.group.GroupService;
-import com.veeva.vault.sdk.api.picklist.Picklist;
-import com.veeva.vault.sdk.api.picklist.PicklistService;
 import com.veeva.vault.sdk.api.query.Query;
 import com.veeva.vault.sdk.api.query.QueryExecutionRequest;
 import com.veeva.vault.sdk.api.query.QueryService;
@@ -36,10 +37,12 @@ public class VpsDispatchHelperImpl implements VpsDispatchHelperService {
 
     //    private static final String DISPATCH_COUNTRIES_GROUP_NAME_SUFFIX = "_country_dispatch_group__c";
     private static final String DISPATCH_COUNTRIES_GROUP_NAME_SUFFIX = " Country Dispatch Group";
+    private static final String DISPATCH_METADATA_CONTEXT = "DISPATCH_METADATA";
 
 
     /**
-     * *
+     * Sets the participant group to the dispatch country groups. All groups
+     * are resolved with a single bulk GroupService call.
      *
      * @param workflowInstanceService
      * @param participantGroup
@@ -50,21 +53,32 @@ public class VpsDispatchHelperImpl implements VpsDispatchHelperService {
 
         GroupService groupService = ServiceLocator.locate(GroupService.class);
         List<Group> participantGroups = VaultCollections.newList();
+        List<String> groupAPINames = VaultCollections.newList();
         LogService logger = ServiceLocator.locate(LogService.class);
         boolean debug = logger.isDebugEnabled();
         for (String item : dispatchCountriesLabelSet) {
             if (groupNamesLabel.containsKey(item)) {
                 String groupAPIName = groupNamesLabel.get(item);
                 if(debug) logger.debug("Group API Name:{}", groupAPIName);
-                Group dispatchCountryGroup = groupService
-                        .getGroupsByNames(VaultCollections.asList(groupAPIName))
-                        .getGroupByName(groupAPIName);
-                participantGroups.add(dispatchCountryGroup);
+                if (!groupAPINames.contains(groupAPIName)) {
+                    groupAPINames.add(groupAPIName);
+                }
             } else {
                 throw new RollbackException("SET_PARTICIPANT_ERROR:", "User Managed Group " + item + "  is missing.");
             }
         }
 
+        if (!groupAPINames.isEmpty()) {
+            GetGroupsResponse groupsResponse = groupService.getGroupsByNames(groupAPINames);
+            for (String groupAPIName : groupAPINames) {
+                Group dispatchCountryGroup = groupsResponse.getGroupByName(groupAPIName);
+                if (dispatchCountryGroup == null) {
+                    throw new RollbackException("SET_PARTICIPANT_ERROR:", "User Managed Group " + groupAPIName + "  is missing.");
+                }
+                participantGroups.add(dispatchCountryGroup);
+            }
+        }
+
         WorkflowParticipantGroupUpdate participantGroupUpdate =
                 workflowInstanceService.newParticipantGroupUpdate(participantGroup)
                         .setGroups(participantGroups);
@@ -196,12 +210,28 @@ public class VpsDispatchHelperImpl implements VpsDispatchHelperService {
     }
 
     /**
-     * *
+     * Returns the active group label to group name map for the group type.
+     * The map is cached per group type on the request context, so each type is queried once per request.
      *
      * @param groupType
      * @return
      */
     public Map<String, String> getGroupNameLabels(String groupType) {
+        DispatchMetadataContext metadata = getDispatchMetadata();
+        if (!metadata.isGroupsLoaded(groupType)) {
+            metadata.setGroupNamesByLabel(groupType, queryGroupNameLabels(groupType));
+            RequestContext.get().setValue(DISPATCH_METADATA_CONTEXT, metadata);
+        }
+        return metadata.getGroupNamesByLabel(groupType);
+    }
+
+    /**
+     * *
+     *
+     * @param groupType
+     * @return
+     */
+    private Map<String, String> queryGroupNameLabels(String groupType) {
         QueryService queryService = ServiceLocator.locate(QueryService.class);
         LogService logger = ServiceLocator.locate(LogService.class);
         Map<String, String> groupNameList = VaultCollections.newMap();
@@ -260,10 +290,7 @@ public class VpsDispatchHelperImpl implements VpsDispatchHelperService {
      * @return picklistlabels as Set
      */
     public Set<String> getPicklistLabels(Record inputRecord, String picklistFieldName) {
-        LogService log = ServiceLocator.locate(LogService.class);
-
-        PicklistService picklistService = ServiceLocator.locate(PicklistService.class);
-        Picklist picklist = picklistService.getPicklist(picklistFieldName);
+        Map<String, String> picklistValueLabels = MetadataCache.get().getPicklist(picklistFieldName);
         List<String> picklistValues = inputRecord.getValue(picklistFieldName, ValueType.PICKLIST_VALUES);
 
         Set<String> picklistLabels = VaultCollections.newSet();
@@ -271,12 +298,27 @@ public class VpsDispatchHelperImpl implements VpsDispatchHelperService {
 
             for (String picklistValue : picklistValues) {
                 //Get picklist value label
-                String picklistValueLabel =
-                        picklist.getPicklistValue(picklistValue).getLabel();
-                picklistLabels.add(picklistValueLabel);
+                String picklistValueLabel = picklistValueLabels.get(picklistValue);
+                if (picklistValueLabel != null) {
+                    picklistLabels.add(picklistValueLabel);
+                }
             }
         }
 
         return picklistLabels;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the dispatch metadata from the request context
+     *
+     * @return the dispatch metadata context
+     */
+    private DispatchMetadataContext getDispatchMetadata() {
+        DispatchMetadataContext metadata = RequestContext.get().getValue(DISPATCH_METADATA_CONTEXT, DispatchMetadataContext.class);
+        if (metadata == null) {
+            metadata = new DispatchMetadataContext();
+            RequestContext.get().setValue(DISPATCH_METADATA_CONTEXT, metadata);
+        }
+        return metadata;
+    }
+}
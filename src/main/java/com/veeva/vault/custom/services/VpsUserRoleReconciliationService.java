@@ -0,0 +1,55 @@
+/*
+ * --------------------------------------------------------------------
+ * UserDefinedService: VpsUserRoleReconciliationService
+ * Author: achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:	Reconciles the user role setup records of a template
+ *              group with its templates and active assignments
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ *
+ */
+package com.veeva.vault.custom.services;
+
+import com.veeva.vault.custom.util.VpsJobRecordWriter;
+import com.veeva.vault.sdk.api.core.UserDefinedService;
+import com.veeva.vault.sdk.api.core.UserDefinedServiceInfo;
+import com.veeva.vault.sdk.api.data.Record;
+
+import java.util.List;
+
+@UserDefinedServiceInfo
+public interface VpsUserRoleReconciliationService extends UserDefinedService {
+
+    /**
+     * Starts VpsUserRoleReconciliationJob for the template group. The job
+     * reads the templates once the change is committed; the previous versions
+     * of the changed templates are passed along (mapped template fields only)
+     * so the job knows which existing rows belonged to the group before.
+     *
+     * @param templateGroupId template group of the changed templates
+     * @param oldTemplates the changed templates before the update
+     */
+    public void startReconciliation(String templateGroupId, List<Record> oldTemplates);
+
+    /**
+     * Applies the changed user role templates to the user role setup records of
+     * their template group. The desired rows (active templates x active
+     * assignments) are compared with the existing rows by a key over the
+     * mapped fields; only missing rows are created and only rows that belonged
+     * to the group before the change and are no longer desired are deleted.
+     *
+     * @param templateGroupId template group of the changed templates
+     * @param previousTemplates previous versions of the changed templates, as
+     *                          encoded by startReconciliation
+     * @param recordWriter writer of the job task; the rows that fail are recorded in it
+     * @return number of user role setup records created and deleted
+     */
+    public int reconcile(String templateGroupId, String previousTemplates, VpsJobRecordWriter recordWriter);
+}
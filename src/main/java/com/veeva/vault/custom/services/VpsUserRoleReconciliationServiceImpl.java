@@ -0,0 +1,258 @@
+/*
+ * --------------------------------------------------------------------
+ * UserDefinedService: VpsUserRoleReconciliationServiceImpl
+ * Author: achinchalkar @ Veeva
+ * Created Date:        2023-03-14
+ * Last Modifed Date:   2023-03-14
+ *---------------------------------------------------------------------
+ * Description:	Implementation of the User Role Reconciliation Service.
+ *              Starts the reconciliation job of a template group and,
+ *              from that job, loads the template group setup data and
+ *              runs VpsUserRoleReconciler in the service memory space.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ *
+ */
+package com.veeva.vault.custom.services;
+
+import com.veeva.vault.custom.jobs.VpsUserRoleReconciliationJob;
+import com.veeva.vault.custom.model.TemplateGroup;
+import com.veeva.vault.custom.model.UserRoleTemplateMapping;
+import com.veeva.vault.custom.util.VpsJobRecordWriter;
+import com.veeva.vault.custom.util.VpsUserRoleReconciler;
+import com.veeva.vault.sdk.api.core.*;
+import com.veeva.vault.sdk.api.data.Record;
+import com.veeva.vault.sdk.api.data.RecordService;
+import com.veeva.vault.sdk.api.job.JobParameters;
+import com.veeva.vault.sdk.api.job.JobService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+@UserDefinedServiceInfo
+public class VpsUserRoleReconciliationServiceImpl implements VpsUserRoleReconciliationService {
+    private static final String TEMPLATE_OBJECT = "user_role_template__c";
+    private static final String STATUS_ACTIVE = "active__v";
+    private static final String STATUS_INACTIVE = "inactive__v";
+    // previous templates are encoded as id, status, field=value... per template; the separators
+    // and the escape character are escaped with a backslash inside ids, field names and values
+    private static final char TEMPLATE_SEPARATOR = '\u001e';
+    private static final char FIELD_SEPARATOR = '\u001f';
+    private static final char VALUE_SEPARATOR = ',';
+    private static final char NAME_SEPARATOR = '=';
+    private static final char ESCAPE = '\\';
+    // upper bound of the previous_templates job parameter
+    private static final int MAX_ENCODED_LENGTH = 100000;
+
+    @Override
+    public void startReconciliation(String templateGroupId, List<Record> oldTemplates) {
+        // the mappings tell which template fields the job needs of the previous versions
+        TemplateGroup setup = new TemplateGroup(templateGroupId);
+        ServiceLocator.locate(VpsUserRoleProvisioningSetupDataService.class).initTemplateGroup(setup);
+        if (setup.getObjectNamePL() == null || setup.getObjectNamePL().isEmpty()) {
+            return;
+        }
+
+        StringBuilder previousTemplates = new StringBuilder();
+        for (Record template : oldTemplates) {
+            List<String> listStatus = template.getValue("status__v", ValueType.PICKLIST_VALUES);
+            boolean active = templateGroupId.equals(template.getValue("template_group__c", ValueType.STRING))
+                    && listStatus != null && listStatus.get(0).equals(STATUS_ACTIVE);
+
+            if (previousTemplates.length() > 0) {
+                previousTemplates.append(TEMPLATE_SEPARATOR);
+            }
+            appendEscaped(previousTemplates, template.getValue("id", ValueType.STRING))
+                    .append(FIELD_SEPARATOR)
+                    .append(active ? STATUS_ACTIVE : STATUS_INACTIVE);
+
+            if (active) {
+                for (UserRoleTemplateMapping u : setup.getUrtm()) {
+                    previousTemplates.append(FIELD_SEPARATOR);
+                    appendEscaped(previousTemplates, u.getTemplate_field__c());
+                    if (u.is_picklist__c()) {
+                        appendValues(previousTemplates, template.getValue(u.getTemplate_field__c(), ValueType.PICKLIST_VALUES));
+                    }
+                    else {
+                        String value = template.getValue(u.getTemplate_field__c(), ValueType.STRING);
+                        if (value != null) {
+                            appendEscaped(previousTemplates.append(NAME_SEPARATOR), value);
+                        }
+                    }
+                }
+            }
+        }
+        if (previousTemplates.length() > MAX_ENCODED_LENGTH) {
+            throw new RollbackException("OPERATION_NOT_ALLOWED", "Too many user role templates changed in one save to reconcile "
+                    + "the template group; save the templates in smaller sets.");
+        }
+
+        JobService jobService = ServiceLocator.locate(JobService.class);
+        JobParameters jobParameters = jobService.newJobParameters(VpsUserRoleReconciliationJob.JOB_NAME);
+        jobParameters.setValue(VpsUserRoleReconciliationJob.PARAM_TEMPLATE_GROUP_ID, templateGroupId);
+        jobParameters.setValue(VpsUserRoleReconciliationJob.PARAM_PREVIOUS_TEMPLATES, previousTemplates.toString());
+        jobService.run(jobParameters);
+    }
+
+    @Override
+    public int reconcile(String templateGroupId, String previousTemplates, VpsJobRecordWriter recordWriter) {
+        LogService debug = ServiceLocator.locate(LogService.class);
+        debug.logResourceUsage("VpsUserRoleReconciliationServiceImpl.reconcile");
+
+        // object of the template group, then its mappings and active templates
+        TemplateGroup setup = new TemplateGroup(templateGroupId);
+        ServiceLocator.locate(VpsUserRoleProvisioningSetupDataService.class).initTemplateGroup(setup);
+        if (setup.getObjectNamePL() == null || setup.getObjectNamePL().isEmpty()) {
+            return 0;
+        }
+
+        TemplateGroup templateGroup = new TemplateGroup(templateGroupId, VaultCollections.asList(setup.getObjectNamePL()));
+        ServiceLocator.locate(VpsUserRoleTemplateGroupService.class).initTemplateGroup(templateGroup);
+
+        // the committed templates are desired; before the change the changed ones had their previous versions
+        Set<String> changedIds = VaultCollections.newSet();
+        List<Record> previousVersions = decodeTemplates(previousTemplates, templateGroup, changedIds);
+        List<Record> desiredTemplates = templateGroup.getTemplates();
+        List<Record> previousList = VaultCollections.newList();
+
+        for (Record template : desiredTemplates) {
+            if (!changedIds.contains(template.getValue("id", ValueType.STRING))) {
+                previousList.add(template);
+            }
+        }
+        previousList.addAll(previousVersions);
+
+        return new VpsUserRoleReconciler(templateGroup, desiredTemplates, previousList)
+                .withRecordWriter(recordWriter)
+                .reconcile();
+    }
+
+    /**
+     * @param previousTemplates encoded previous templates
+     * @param templateGroup initialized template group, for the picklist mappings
+     * @param changedIds collects the ids of all changed templates
+     * @return the previous versions that were active in the template group
+     */
+    @SuppressWarnings("unchecked")
+    private List<Record> decodeTemplates(String previousTemplates, TemplateGroup templateGroup, Set<String> changedIds) {
+        List<Record> result = VaultCollections.newList();
+        if (previousTemplates == null || previousTemplates.isEmpty()) {
+            return result;
+        }
+
+        Set<String> picklistFields = VaultCollections.newSet();
+        for (UserRoleTemplateMapping u : templateGroup.getUrtm()) {
+            if (u.is_picklist__c()) {
+                picklistFields.add(u.getTemplate_field__c());
+            }
+        }
+
+        RecordService recordService = ServiceLocator.locate(RecordService.class);
+        for (String encodedTemplate : split(previousTemplates, TEMPLATE_SEPARATOR)) {
+            List<String> fields = split(encodedTemplate, FIELD_SEPARATOR);
+            String id = unescape(fields.get(0));
+            changedIds.add(id);
+            if (fields.size() < 2 || !STATUS_ACTIVE.equals(unescape(fields.get(1)))) {
+                continue;
+            }
+
+            Record template = recordService.newRecordWithId(TEMPLATE_OBJECT, id);
+            for (int i = 2; i < fields.size(); i++) {
+                List<String> nameAndValue = split(fields.get(i), NAME_SEPARATOR);
+                String fieldName = unescape(nameAndValue.get(0));
+                String value = nameAndValue.size() < 2 ? null : nameAndValue.get(1);
+                if (picklistFields.contains(fieldName)) {
+                    List<String> values = null;
+                    if (value != null) {
+                        values = VaultCollections.newList();
+                        if (!value.isEmpty()) {
+                            for (String picklistValue : split(value, VALUE_SEPARATOR)) {
+                                values.add(unescape(picklistValue));
+                            }
+                        }
+                    }
+                    template.setValue(fieldName, values);
+                }
+                else {
+                    template.setValue(fieldName, value == null ? null : unescape(value));
+                }
+            }
+            result.add(template);
+        }
+        return result;
+    }
+
+    /**
+     * Appends =value,value... with the picklist values sorted, nothing when there are none
+     */
+    @SuppressWarnings("unchecked")
+    private static void appendValues(StringBuilder encoded, List<String> values) {
+        if (values == null) {
+            return;
+        }
+        List<String> sortedValues = VaultCollections.newList();
+        sortedValues.addAll(values);
+        Collections.sort(sortedValues);
+
+        encoded.append(NAME_SEPARATOR);
+        for (int i = 0; i < sortedValues.size(); i++) {
+            if (i > 0) {
+                encoded.append(VALUE_SEPARATOR);
+            }
+            appendEscaped(encoded, sortedValues.get(i));
+        }
+    }
+
+    private static StringBuilder appendEscaped(StringBuilder encoded, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ESCAPE || c == TEMPLATE_SEPARATOR || c == FIELD_SEPARATOR || c == VALUE_SEPARATOR || c == NAME_SEPARATOR) {
+                encoded.append(ESCAPE);
+            }
+            encoded.append(c);
+        }
+        return encoded;
+    }
+
+    /**
+     * Splits on the unescaped separators; the parts keep their escapes so they can be split further.
+     * The name=value split stops at the first separator.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> split(String encoded, char separator) {
+        List<String> parts = VaultCollections.newList();
+        int start = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == ESCAPE) {
+                i++;
+            }
+            else if (c == separator) {
+                parts.add(encoded.substring(start, i));
+                start = i + 1;
+                if (separator == NAME_SEPARATOR) {
+                    break;
+                }
+            }
+        }
+        parts.add(encoded.substring(start));
+        return parts;
+    }
+
+    private static String unescape(String encoded) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == ESCAPE && i + 1 < encoded.length()) {
+                c = encoded.charAt(++i);
+            }
+            value.append(c);
+        }
+        return value.toString();
+    }
+}
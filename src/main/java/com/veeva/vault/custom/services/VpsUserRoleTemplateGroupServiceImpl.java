@@ -1,22 +1,17 @@
 package com.veeva.vault.custom.services;
 
-import com.veeva.vault.custom.classes.api.VpsAPIResponse;
+import com.veeva.vault.custom.model.MetadataCache;
 import com.veeva.vault.custom.model.TemplateGroup;
 import com.veeva.vault.custom.model.UserRoleTemplateMapping;
 import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.custom.util.VpsHttpQueryGateway;
+import com.veeva.vault.custom.util.VpsLocalQueryGateway;
+import com.veeva.vault.custom.util.VpsQueryGateway;
+import com.veeva.vault.custom.util.VpsRowShape;
 import com.veeva.vault.sdk.api.core.*;
 import com.veeva.vault.sdk.api.data.ReadRecordsResponse;
 import com.veeva.vault.sdk.api.data.Record;
 import com.veeva.vault.sdk.api.data.RecordService;
-import com.veeva.vault.sdk.api.http.HttpMethod;
-import com.veeva.vault.sdk.api.http.HttpRequest;
-import com.veeva.vault.sdk.api.http.HttpResponseBodyValueType;
-import com.veeva.vault.sdk.api.http.HttpService;
-import com.veeva.vault.sdk.api.json.JsonArray;
-import com.veeva.vault.sdk.api.json.JsonObject;
-import com.veeva.vault.sdk.api.json.JsonValueType;
-import com.veeva.vault.sdk.api.picklist.Picklist;
-import com.veeva.vault.sdk.api.picklist.PicklistService;
 
 import java.util.List;
 import java.util.Map;
@@ -28,10 +23,6 @@ public class VpsUserRoleTemplateGroupServiceImpl implements VpsUserRoleTemplateG
 
     @Override
     public void initTemplateGroup(TemplateGroup templateGroup) {
-        String RESPONSE_STATUS_SUCCESS = "SUCCESS";
-        String LOCAL_CONNECTION = "local_http_callout_connection";
-        String URL_QUERY = "/api/v21.2/query";
-
         List<String> urtIds = VaultCollections.newList();
 
         if (templateGroup == null) return;
@@ -40,40 +31,21 @@ public class VpsUserRoleTemplateGroupServiceImpl implements VpsUserRoleTemplateG
         templateGroup.setTemplates(VaultCollections.newList());
 
         // object name - need to get the label from the picklist
-        PicklistService picklistService = ServiceLocator.locate(PicklistService.class);
-        Picklist picklistURSObject = picklistService.getPicklist("user_role_setup_object__c");
-        templateGroup.setObjectName(picklistURSObject.getPicklistValue(templateGroup.getListURS().get(0)).getLabel());
+        templateGroup.setObjectName(MetadataCache.get().getPicklistLabel("user_role_setup_object__c", templateGroup.getListURS().get(0)));
         templateGroup.setObjectNamePL(templateGroup.getListURS().get(0));
 
         // urtm - Retrieve the user role template mapping setup data
         String query = "select template_field__c,user_role_setup_field__c,is_picklist__c from user_role_template_mapping__c where user_role_setup_object__c = '" + templateGroup.getObjectNamePL() + "' and status__v = 'active__v'";
 
-        HttpService httpService = ServiceLocator.locate(HttpService.class);
-        HttpRequest ursTemplateMappingRequest = httpService.newHttpRequest(LOCAL_CONNECTION)
-                .setMethod(HttpMethod.POST)
-                .setBodyParam("q", query)
-                .appendPath(URL_QUERY);
-
-        httpService.send(ursTemplateMappingRequest, HttpResponseBodyValueType.STRING)
-                .onSuccess(httpResponse -> {
-                    VpsAPIResponse apiResponse = new VpsAPIResponse(httpResponse.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSE_STATUS_SUCCESS)) {
-                        JsonArray jsonArray = apiResponse.getArray("data");
-                        if (jsonArray != null) {
-                            for (int i = 0; i < jsonArray.getSize(); i++) {
-                                JsonObject dataItem = jsonArray.getValue(i, JsonValueType.OBJECT);
-                                String templateField = dataItem.getValue("template_field__c", JsonValueType.STRING);
-                                String ursField = dataItem.getValue("user_role_setup_field__c", JsonValueType.STRING);
-                                Boolean isPicklist = dataItem.getValue("is_picklist__c", JsonValueType.BOOLEAN);
-                                templateGroup.getUrtm().add(new UserRoleTemplateMapping(templateField, ursField, isPicklist));
-                            }
-                        }
-                    }
-                })
-                .onError(httpOperationError -> {
-
-                })
-                .execute();
+        VpsQueryGateway queryGateway = new VpsLocalQueryGateway();
+        VpsRowShape urtmShape = new VpsRowShape()
+                .field("template_field__c", VpsRowShape.TYPE_STRING, null)
+                .field("user_role_setup_field__c", VpsRowShape.TYPE_STRING, null)
+                .field("is_picklist__c", VpsRowShape.TYPE_BOOLEAN, null);
+        queryGateway.query(query, urtmShape, row -> {
+            templateGroup.getUrtm().add(new UserRoleTemplateMapping(row.getString("template_field__c"),
+                    row.getString("user_role_setup_field__c"), row.getBoolean("is_picklist__c")));
+        });
 
         if (templateGroup.getUrtm() == null || templateGroup.getUrtm().size() < 1) {
             RollbackException rollbackException = new RollbackException("OPERATION_NOT_ALLOWED", ERROR_URTM);
@@ -84,29 +56,9 @@ public class VpsUserRoleTemplateGroupServiceImpl implements VpsUserRoleTemplateG
         // this uses readRecords to generically retrieve a list of records to be referenced later
         query = "select id from user_role_template__c where template_group__c='" + templateGroup.getTemplateGroupId() + "'";
 
-        HttpRequest urTemplateRequest = httpService.newHttpRequest(LOCAL_CONNECTION)
-                .setMethod(HttpMethod.POST)
-                .setBodyParam("q", query)
-                .appendPath(URL_QUERY);
-
-        httpService.send(urTemplateRequest, HttpResponseBodyValueType.STRING)
-                .onSuccess(httpResponse -> {
-                    VpsAPIResponse apiResponse = new VpsAPIResponse(httpResponse.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSE_STATUS_SUCCESS)) {
-                        JsonArray jsonArray = apiResponse.getArray("data");
-                        if (jsonArray != null) {
-                            for (int i = 0; i < jsonArray.getSize(); i++) {
-                                JsonObject dataItem = jsonArray.getValue(i, JsonValueType.OBJECT);
-                                String id = dataItem.getValue("id", JsonValueType.STRING);
-                                urtIds.add(id);
-                            }
-                        }
-                    }
-                })
-                .onError(httpOperationError -> {
-
-                })
-                .execute();
+        // HTTP transport: the templates are read from the committed state
+        VpsRowShape idShape = new VpsRowShape().field("id", VpsRowShape.TYPE_STRING, null);
+        new VpsHttpQueryGateway().query(query, idShape, row -> urtIds.add(row.getString("id")));
 
         RecordService recordService = ServiceLocator.locate(RecordService.class);
         List<Record> listRecord = VaultCollections.newList();
@@ -209,10 +161,6 @@ public class VpsUserRoleTemplateGroupServiceImpl implements VpsUserRoleTemplateG
 
     @Override
     public List<Record> getExistingURSRecords(TemplateGroup templateGroup, String userId, String countryValue, String countryAPIName) {
-        String RESPONSE_STATUS_SUCCESS = "SUCCESS";
-        String LOCAL_CONNECTION = "local_http_callout_connection";
-        String URL_QUERY = "/api/v21.2/query";
-
         List<Record> listRecord = VaultCollections.newList();
         List<String> templateGroupIds = VaultCollections.newList();
         int count = 0;
@@ -239,35 +187,9 @@ public class VpsUserRoleTemplateGroupServiceImpl implements VpsUserRoleTemplateG
                 .append("AND user__vr.status__v = 'active__v'");*/
 
         Log.debug("getExistingURSRecords Query:" + query);
-        HttpService httpService = ServiceLocator.locate(HttpService.class);
-        HttpRequest request = httpService.newHttpRequest(LOCAL_CONNECTION)
-                .setMethod(HttpMethod.POST)
-                .setBodyParam("q", query.toString())
-                .appendPath(URL_QUERY);
-
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onSuccess(httpResponse -> {
-                    VpsAPIResponse apiResponse = new VpsAPIResponse(httpResponse.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSE_STATUS_SUCCESS)) {
-                        JsonArray jsonArray = apiResponse.getArray("data");
-                        if (jsonArray != null) {
-                            /*
-                             * Loop through the user role setup records, find if there is an exact match on all sharing fields in the record
-                             * 1. While loop of all user role setup records
-                             *  2. For loop for the fields on the template to set the data
-                             */
-                            for (int i = 0; i < jsonArray.getSize(); i++) {
-                                JsonObject dataItem = jsonArray.getValue(i, JsonValueType.OBJECT);
-                                String id = dataItem.getValue("id", JsonValueType.STRING);
-                                templateGroupIds.add(id);
-                            }
-                        }
-                    }
-                })
-                .onError(httpOperationError -> {
-
-                })
-                .execute();
+        VpsQueryGateway queryGateway = new VpsLocalQueryGateway();
+        VpsRowShape idShape = new VpsRowShape().field("id", VpsRowShape.TYPE_STRING, null);
+        queryGateway.query(query.toString(), idShape, row -> templateGroupIds.add(row.getString("id")));
 
         RecordService recordService = ServiceLocator.locate(RecordService.class);
 
@@ -25,29 +25,12 @@ import com.veeva.vault.custom.model.UserRoleTemplateMapping;
 import com.veeva.vault.sdk.api.core.UserDefinedService;
 import com.veeva.vault.sdk.api.core.UserDefinedServiceInfo;
 import com.veeva.vault.sdk.api.data.Record;
-import com.veeva.vault.sdk.api.query.QueryResult;
 
 import java.util.List;
-import java.util.Map;
 
 @UserDefinedServiceInfo
 public interface VpsUserRoleTemplateProvisionService extends UserDefinedService {
 
-    /**
-     * Determines if a record should be deleted from User Role Template Provisioning
-     *
-     * @param urtmf User Role Template Mapping
-     * @param queryResult - query results
-     * @param recTemplate - the record template
-     * @param countryAPIName - the country api name
-     * @param countryValue - the country value
-     * @return true if the record can be deleted.
-     */
-    public boolean isDelete(Map<String, UserRoleTemplateMapping> urtmf,
-                     QueryResult queryResult, Record recTemplate, String countryAPIName, String countryValue);
-
     public List<Record> getNewUserRecords(Record recContext, List<UserRoleTemplateMapping> urtm,
                                           List<Record> templates, String objectName, String userAPIName);
-
-    public void refreshUserProvisioningRecords(String templateGroup);
 }
\ No newline at end of file
@@ -1,16 +1,13 @@
 package com.veeva.vault.custom.triggers;
 
-import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.custom.model.ProductRestrictionContext;
 import com.veeva.vault.sdk.api.core.ValueType;
 import com.veeva.vault.sdk.api.core.VaultCollections;
 import com.veeva.vault.sdk.api.core.VaultRuntimeException;
 import com.veeva.vault.sdk.api.data.*;
-import com.veeva.vault.sdk.api.query.QueryResponse;
-import com.veeva.vault.sdk.api.query.QueryResult;
-import com.veeva.vault.sdk.api.query.QueryService;
 
-import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Object: application__v
@@ -20,6 +17,8 @@ import java.util.List;
  *
  * Set product_restriction__c based on values in product_family__c (to drive DAC)
  *
+ * 2023-03-14: The product families of the batch are resolved with one query
+ *    (ProductRestrictionContext, cached per request)
  */
 @RecordTriggerInfo(object = "application__v", events = {RecordEvent.BEFORE_INSERT,RecordEvent.BEFORE_UPDATE}, name="application_product_restrictions__c")
 public class ApplicationProductRestriction implements RecordTrigger {
@@ -27,11 +26,12 @@ public class ApplicationProductRestriction implements RecordTrigger {
 	private static final String PRODUCT_FAMILY = "product_family__c";
 	private static final String PRODUCT_RESTRICTION = "product_restriction__c";
 	private static final String PRODUCT_NONE = "none__c";	
-	private static final String QUERY_PRODUCT = "select product_restriction__c from product__v where id = {id}";
-	private static final int BATCH_SIZE = 500;
 	
     public void execute(RecordTriggerContext recordTriggerContext) {    
-    	final String SINGLE_QUOTE = String.valueOf((char) 39);
+    	
+    	// Records whose product family needs to be resolved
+    	List<RecordChange> listResolve = VaultCollections.newList();
+    	Set<String> setProductFamily = VaultCollections.newSet();
     	
         for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
             try {
@@ -65,28 +65,8 @@ public class ApplicationProductRestriction implements RecordTrigger {
                 }
                 
                 if (bContinue) {
-                    // Get the product family name and see if it exists in the picklist                                        
-                    String query = QUERY_PRODUCT.replace("{id}", SINGLE_QUOTE + productFamily + SINGLE_QUOTE);
-                    
-                    QueryService queryService = ServiceLocator.locate(QueryService.class);
-                    QueryResponse queryResponse = queryService.query(query);
-                    Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
-                    while (iterator.hasNext()) {
-                        QueryResult queryResult = iterator.next();
-
-                        List<String> listRestrictions = queryResult.getValue(PRODUCT_RESTRICTION, ValueType.PICKLIST_VALUES);
-                        
-                        if (listRestrictions != null) {
-                            for (String s : listRestrictions) {
-                                if (s != null && !s.equals("")) listProductRestrictions.add(s);
-                            }
-                        }
-
-                        if (listProductRestrictions.size() == 0) listProductRestrictions.add(PRODUCT_NONE);
-
-                        inputRecord.getNew().setValue(PRODUCT_RESTRICTION, listProductRestrictions);
-
-                    }
+                	listResolve.add(inputRecord);
+                	setProductFamily.add(productFamily);
                 }
             }
             catch(VaultRuntimeException e) {
@@ -95,8 +75,34 @@ public class ApplicationProductRestriction implements RecordTrigger {
 
             }
         }
+        
+        if (listResolve.isEmpty()) return;
+        
+        // Resolve the distinct product families of the batch with one query
+        ProductRestrictionContext productRestrictions = ProductRestrictionContext.get();
+        try {
+        	productRestrictions.prefetch(setProductFamily);
+        }
+        catch(VaultRuntimeException e) {
+        	for (RecordChange inputRecord : listResolve) {
+        		inputRecord.setError("OPERATION_NOT_ALLOWED",
+        				e.getMessage() + ".  If you feel this is an error, please contact your IT Administrator.");
+        	}
+        	return;
+        }
+        
+        for (RecordChange inputRecord : listResolve) {
+        	// Products that do not exist leave the restriction unchanged
+        	String productFamily = inputRecord.getNew().getValue(PRODUCT_FAMILY, ValueType.STRING);
+        	List<String> listProductRestrictions = productRestrictions.getRestrictions(productFamily);
+        	if (listProductRestrictions != null) {
+        		if (listProductRestrictions.size() == 0) listProductRestrictions.add(PRODUCT_NONE);
+        		
+        		inputRecord.getNew().setValue(PRODUCT_RESTRICTION, listProductRestrictions);
+        	}
+        }
     }
     public static boolean isEqual(Object o1, Object o2) {
     	return o1 == null ? o2 == null :o1.equals(o2);
     }
-}
\ No newline at end of file
+}
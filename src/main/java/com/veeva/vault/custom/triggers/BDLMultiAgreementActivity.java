@@ -51,7 +51,7 @@ public class BDLMultiAgreementActivity implements RecordTrigger {
 	 */
 	public void execute(RecordTriggerContext recordTriggerContext) {
 		final String methodName = BDLMultiAgreementActivity.class.toString() + ".execute()";
-		Log.entry("----" + methodName + "----");
+		Log.entry("----{}----", methodName);
 		String event = recordTriggerContext.getRecordEvent().toString();
 		// Retrieve VQL statement from Vault Trigger object
 		List<SDKSetting> sdkSettings = BDLUtil.retrieveAllSDKSettings();				
@@ -77,6 +77,6 @@ public class BDLMultiAgreementActivity implements RecordTrigger {
 			default:
 				break;
 		}
-		Log.exit("----" + methodName + "----");
+		Log.exit("----{}----", methodName);
 	}
 }
\ No newline at end of file
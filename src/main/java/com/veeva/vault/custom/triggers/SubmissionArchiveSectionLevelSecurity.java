@@ -1,10 +1,10 @@
 package com.veeva.vault.custom.triggers;
 
-import java.util.Iterator;
 import java.util.List;
 
 import com.veeva.vault.custom.model.SASectionRule;
 import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.custom.util.VpsRowShape;
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.StringUtils;
 import com.veeva.vault.sdk.api.core.TriggerOrder;
@@ -15,8 +15,6 @@ import com.veeva.vault.sdk.api.data.RecordEvent;
 import com.veeva.vault.sdk.api.data.RecordTrigger;
 import com.veeva.vault.sdk.api.data.RecordTriggerContext;
 import com.veeva.vault.sdk.api.data.RecordTriggerInfo;
-import com.veeva.vault.sdk.api.query.QueryResponse;
-import com.veeva.vault.sdk.api.query.QueryResult;
 import com.veeva.vault.sdk.api.query.QueryService;
 
 /**
@@ -113,12 +111,12 @@ public class SubmissionArchiveSectionLevelSecurity implements RecordTrigger {
 						if (hasWildCards) {
 							String matchingRules = sectionRule.getMatchingRules().replace(SA_SECTION_RULE_WILDCARD, REG_EX_WILDCARD_PATTERN);
 							if (StringUtils.matches(fullPath,"(.*?)" + matchingRules + "(.*?)")) {
-								Log.exit(methodName + ":" + "Matching rules found: [Wild Card, CONTAINS]: " + sectionRule.getSaGrouping());
+								Log.exit("{}:Matching rules found: [Wild Card, CONTAINS]: {}", methodName, sectionRule.getSaGrouping());
 								return sectionRule.getSaGrouping();
 							}
 						} else {
 							if (fullPath.contains(sectionRule.getMatchingRules())) {
-								Log.exit(methodName + ":" + "Matching rules found: [No Wild Card, CONTAINS]: " + sectionRule.getSaGrouping());
+								Log.exit("{}:Matching rules found: [No Wild Card, CONTAINS]: {}", methodName, sectionRule.getSaGrouping());
 								return sectionRule.getSaGrouping();
 							}
 						}
@@ -127,12 +125,12 @@ public class SubmissionArchiveSectionLevelSecurity implements RecordTrigger {
 						if (hasWildCards) {
 							String matchingRules = sectionRule.getMatchingRules().replace(SA_SECTION_RULE_WILDCARD, REG_EX_WILDCARD_PATTERN);
 							if (StringUtils.matches(fullPath, matchingRules + "(.*?)")) {
-								Log.exit(methodName + ":" + "Matching rules found: [Wild Card, STARTS WITH]: " + sectionRule.getSaGrouping());
+								Log.exit("{}:Matching rules found: [Wild Card, STARTS WITH]: {}", methodName, sectionRule.getSaGrouping());
 								return sectionRule.getSaGrouping();
 							}
 						} else {
 							if (fullPath.startsWith(sectionRule.getMatchingRules())) {
-								Log.exit(methodName + ":" + "Matching rules found: [No Wild Card, STARTS WITH]: " + sectionRule.getSaGrouping());
+								Log.exit("{}:Matching rules found: [No Wild Card, STARTS WITH]: {}", methodName, sectionRule.getSaGrouping());
 								return sectionRule.getSaGrouping();
 							}
 						}
@@ -141,12 +139,12 @@ public class SubmissionArchiveSectionLevelSecurity implements RecordTrigger {
 						if (hasWildCards) {
 							String matchingRules = sectionRule.getMatchingRules().replace(SA_SECTION_RULE_WILDCARD, REG_EX_WILDCARD_PATTERN);
 							if (StringUtils.matches(fullPath,"(.*?)" + matchingRules)) {
-								Log.exit(methodName + ":" + "Matching rules found: [Wild Card, ENDS WITH]: " + sectionRule.getSaGrouping());
+								Log.exit("{}:Matching rules found: [Wild Card, ENDS WITH]: {}", methodName, sectionRule.getSaGrouping());
 								return sectionRule.getSaGrouping();
 							}
 						} else {
 							if (fullPath.endsWith(sectionRule.getMatchingRules())) {
-								Log.exit(methodName + ":" + "Matching rules found: [No Wild Card, ENDS WITH]: " + sectionRule.getSaGrouping());
+								Log.exit("{}:Matching rules found: [No Wild Card, ENDS WITH]: {}", methodName, sectionRule.getSaGrouping());
 								return sectionRule.getSaGrouping();
 							}
 						}
@@ -156,7 +154,7 @@ public class SubmissionArchiveSectionLevelSecurity implements RecordTrigger {
 				}				
 			}
 		}
-		Log.exit(methodName + ":" + "No matching rules found: Defaults to [default__c]");
+		Log.exit("{}:No matching rules found: Defaults to [default__c]", methodName);
 		return "default__c";
 	}
 	
@@ -172,24 +170,19 @@ public class SubmissionArchiveSectionLevelSecurity implements RecordTrigger {
     	Log.entry(methodName);
 		List<SASectionRule> sectionRules = VaultCollections.newList();
 		
+		VpsRowShape rowShape = new VpsRowShape()
+				.field(SA_SECTION_RULE_FIELD_LABEL_MATCHING_RULE, VpsRowShape.TYPE_STRING, "")
+				.field(SA_SECTION_RULE_FIELD_LABEL_CONDITION, VpsRowShape.TYPE_PICKLIST, "")
+				.field(SUBMISSION_ARCHIVE_FIELD_LABEL_SA_GROUPING, VpsRowShape.TYPE_PICKLIST, "");
+		
 		QueryService queryService = ServiceLocator.locate(QueryService.class);
-		QueryResponse queryResponse = queryService.query(SA_SECTION_RULE_QUERY);
-		Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
-		while (iterator.hasNext()) {
-			QueryResult queryResult = iterator.next();
-			String matchingRules = (queryResult.getValue(SA_SECTION_RULE_FIELD_LABEL_MATCHING_RULE, ValueType.STRING) == null) 
-					? "" : queryResult.getValue(SA_SECTION_RULE_FIELD_LABEL_MATCHING_RULE, ValueType.STRING);
-			String condition = (queryResult.getValue(SA_SECTION_RULE_FIELD_LABEL_CONDITION, ValueType.PICKLIST_VALUES) == null) 
-					? "" : (String) queryResult.getValue(SA_SECTION_RULE_FIELD_LABEL_CONDITION, ValueType.PICKLIST_VALUES).get(0);
-			String saGrouping = (queryResult.getValue(SUBMISSION_ARCHIVE_FIELD_LABEL_SA_GROUPING, ValueType.PICKLIST_VALUES) == null) 
-					? "" : (String) queryResult.getValue(SUBMISSION_ARCHIVE_FIELD_LABEL_SA_GROUPING, ValueType.PICKLIST_VALUES).get(0);
-			
+		rowShape.stream(queryService.query(SA_SECTION_RULE_QUERY), row -> {
 			SASectionRule sectionRule = new SASectionRule();
-			sectionRule.setCondition(condition);
-			sectionRule.setMatchingRules(matchingRules);
-			sectionRule.setSaGrouping(saGrouping);
+			sectionRule.setCondition(row.getString(SA_SECTION_RULE_FIELD_LABEL_CONDITION));
+			sectionRule.setMatchingRules(row.getString(SA_SECTION_RULE_FIELD_LABEL_MATCHING_RULE));
+			sectionRule.setSaGrouping(row.getString(SUBMISSION_ARCHIVE_FIELD_LABEL_SA_GROUPING));
 			sectionRules.add(sectionRule);		
-		}
+		});
 		
 		return sectionRules;
 	}
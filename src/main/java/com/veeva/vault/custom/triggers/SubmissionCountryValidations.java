@@ -1,16 +1,13 @@
 package com.veeva.vault.custom.triggers;
 
-import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.custom.util.QueryServiceUtil;
 import com.veeva.vault.sdk.api.core.ValueType;
 import com.veeva.vault.sdk.api.core.VaultCollections;
 import com.veeva.vault.sdk.api.core.VaultRuntimeException;
 import com.veeva.vault.sdk.api.data.*;
-import com.veeva.vault.sdk.api.query.QueryResponse;
-import com.veeva.vault.sdk.api.query.QueryResult;
-import com.veeva.vault.sdk.api.query.QueryService;
 
-import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Object: submission_country__rim
@@ -27,30 +24,31 @@ import java.util.List;
 public class SubmissionCountryValidations implements RecordTrigger {
 		
 	private static final String SUBMISSION_RIM = "submission__rim";	
-	private static final String QUERY_SUBMISSION = "select id from submission__v where archive_status__v='IMPORT_SUCCEEDED' and id = {id}";
+	private static final String IMPORTED_SUBMISSION = "archive_status__v='IMPORT_SUCCEEDED'";
 	private static final String ERROR_NO_DELETE = "Unable to delete Submission Country for imported Submissions";
-	private static final int BATCH_SIZE = 500;
 	
-    public void execute(RecordTriggerContext recordTriggerContext) {    
-    	final String SINGLE_QUOTE = String.valueOf((char) 39);
+    @SuppressWarnings("unchecked")
+	public void execute(RecordTriggerContext recordTriggerContext) {    
+    	List<String> submissionIds = VaultCollections.newList();
+    	for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
+    		submissionIds.add(inputRecord.getOld().getValue(SUBMISSION_RIM, ValueType.STRING));
+    	}
     	
-        for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
-            try {
+        try {
+        	// One query for the batch, returning the imported submissions
+        	Set<String> importedSubmissions = QueryServiceUtil.retrieveParentsWithChildren("submission__v", "id", submissionIds, IMPORTED_SUBMISSION);
+        	
+        	for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
                 String submissionId = inputRecord.getOld().getValue(SUBMISSION_RIM, ValueType.STRING);
-                
-            	String query = QUERY_SUBMISSION.replace("{id}", SINGLE_QUOTE + submissionId + SINGLE_QUOTE);
-                
-                QueryService queryService = ServiceLocator.locate(QueryService.class);
-                QueryResponse queryResponse = queryService.query(query);
-                
-                if (queryResponse.getResultCount() > 0)                 
+                if (importedSubmissions.contains(submissionId))                 
                 	inputRecord.setError("OPERATION_NOT_ALLOWED",ERROR_NO_DELETE);
-               
-            }            
-            catch(VaultRuntimeException e) {
-            	inputRecord.setError("OPERATION_NOT_ALLOWED",
-                        e.getMessage() + ".  If you feel this is an error, please contact your IT Administrator.");
-            }            	
-        }
+        	}
+        }            
+        catch(VaultRuntimeException e) {
+        	for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
+        		inputRecord.setError("OPERATION_NOT_ALLOWED",
+        				e.getMessage() + ".  If you feel this is an error, please contact your IT Administrator.");
+        	}
+        }            	
     }
-}
\ No newline at end of file
+}
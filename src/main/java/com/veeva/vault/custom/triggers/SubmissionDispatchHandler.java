@@ -22,6 +22,10 @@
  *
  * Revision:
  * 2020-05-01: 2.8 Release. Added related object support
+ * 2023-03-14: Enter/exit the request re-entrancy guard (NestedTriggerContext)
+ * 2023-03-14: A2 applies the dispatch countries to the current reporting countries (ReportingCountriesContext)
+ * 2023-03-14: A1/A3 mark the submission as flagged in the request reprocessing collector (ReprocessingFlagContext)
+ * 2023-03-14: Countries resolved with the request country index (CountryIndex) instead of code conversions and queries
  *---------------------------------------------------------------------
  * Copyright (c) 2020 Veeva Systems Inc.  All Rights Reserved.
  *      This code is based on pre-existing content developed and
@@ -33,6 +37,11 @@
 package com.veeva.vault.custom.triggers;
 
 import com.veeva.vault.custom.model.DispatchRecordContext;
+import com.veeva.vault.custom.model.Country;
+import com.veeva.vault.custom.model.CountryIndex;
+import com.veeva.vault.custom.model.NestedTriggerContext;
+import com.veeva.vault.custom.model.ReportingCountriesContext;
+import com.veeva.vault.custom.model.ReprocessingFlagContext;
 import com.veeva.vault.custom.util.Log;
 import com.veeva.vault.custom.util.TriggerUtil;
 import com.veeva.vault.sdk.api.core.*;
@@ -74,8 +83,20 @@ public class SubmissionDispatchHandler implements RecordTrigger {
     	Log.entry(methodName);
 
     	// 19R1 Changes:  Keep track of nested trigger to prevent optistimic locking
-        TriggerUtil.addNestedTriggerContext(SubmissionDispatchHandler.class.toString());
+        NestedTriggerContext nestedTriggerContext = TriggerUtil.getNestedTriggerContext();
+        nestedTriggerContext.enter(SubmissionDispatchHandler.class.toString());
+        try {
+            processRecordChanges(recordTriggerContext);
+            ReprocessingFlagContext.get().flushIfOutermost(SubmissionDispatchHandler.class.toString());
+        }
+        finally {
+            nestedTriggerContext.exit(SubmissionDispatchHandler.class.toString());
+        }
+
+        Log.exit(methodName);
+    }
 
+    private void processRecordChanges(RecordTriggerContext recordTriggerContext) {
 
         boolean bCountryReprocess = false;
 
@@ -85,9 +106,7 @@ public class SubmissionDispatchHandler implements RecordTrigger {
             	String archiveStatusNew = inputRecord.getNew().getValue(ARCHIVE_STATUS, ValueType.STRING);
             	String archiveStatusOld = inputRecord.getOld().getValue(ARCHIVE_STATUS, ValueType.STRING);
             	if (!isEqual(archiveStatusNew,archiveStatusOld) && archiveStatusNew != null && archiveStatusNew.equals(IMPORT_SUCCEEDED)) {
-            		List<String> listTemp = VaultCollections.newList();
-        			listTemp.add(REPROCESSING_REQUIRED);
-        			inputRecord.getNew().setValue(COUNTRY_PROCESSING, listTemp);
+            		setReprocessingRequired(inputRecord);
             	}
 
             	// A4. Finalizer
@@ -99,9 +118,11 @@ public class SubmissionDispatchHandler implements RecordTrigger {
             	*/
 
 
-            	// Run dispatch trigger logic if dispatch countries field is populated
+            	// Run dispatch trigger logic if dispatch countries field is populated. Updates made by the
+            	// submission country trigger only refresh the reporting countries, never dispatch.
             	List<String> listNewCountries = inputRecord.getNew().getValue(DISPATCH_COUNTRIES, ValueType.PICKLIST_VALUES);
-            	if (listNewCountries != null && !listNewCountries.isEmpty()) {
+            	if (listNewCountries != null && !listNewCountries.isEmpty()
+            			&& !TriggerUtil.getNestedTriggerContext().suppress(SubmissionDispatchHandler.class.toString(), SubmissionCountrySubFields.class.toString())) {
 
             		String applicationId = inputRecord.getNew().getValue("application__v", ValueType.STRING);
             		String submissionId = inputRecord.getNew().getValue("id", ValueType.STRING);
@@ -133,16 +154,18 @@ public class SubmissionDispatchHandler implements RecordTrigger {
                 			//AVC//inputRecord.getNew().setValue(DISPATCH_COUNTRIES, null);
 
                 			// A1 Set country_security_processing_status__c (new countries have been added)
-                			List<String> listTemp = VaultCollections.newList();
-                			listTemp.add(REPROCESSING_REQUIRED);
-                			inputRecord.getNew().setValue(COUNTRY_PROCESSING, listTemp);
-
-                			// A2 Set the reporting countries field
-
-                			List<String> listCountry = VaultCollections.newList();
-                			for (String s : mapCountries.keySet()) listCountry.add(s);
-                			java.util.Collections.sort(listCountry);
-                			inputRecord.getNew().setValue(REPORTING_COUNTRIES, listCountry);
+                			setReprocessingRequired(inputRecord);
+
+                			// A2 Set the reporting countries field (add the dispatch countries that have a
+                			// submission country record to the current value)
+                			Set<String> setResolvedCountries = VaultCollections.newSet();
+                			for (String s : setNewCountries) {
+                				if (mapCountries.containsKey(s)) setResolvedCountries.add(s);
+                			}
+
+                			ReportingCountriesContext reportingCountries = ReportingCountriesContext.get();
+                			reportingCountries.seed(submissionId, inputRecord.getOld().getValue(REPORTING_COUNTRIES, ValueType.PICKLIST_VALUES));
+                			inputRecord.getNew().setValue(REPORTING_COUNTRIES, reportingCountries.apply(submissionId, setResolvedCountries, null));
                 		}
                 		else {
                 			inputRecord.setError("OPERATION_NOT_ALLOWED",ERROR_SUB_COUNTRIES);
@@ -163,9 +186,22 @@ public class SubmissionDispatchHandler implements RecordTrigger {
                          e.getMessage() + ".  If you feel this is an error, please contact your IT Administrator.");
             }
         }
+    }
+    /**
+   	 * Set the reprocessing flag on the submission being updated and register it with the
+   	 * request reprocessing collector, so no other trigger saves the flag again
+   	 * 
+   	 * @param inputRecord
+   	 *            - the submission record change
+   	 */
+    private void setReprocessingRequired(RecordChange inputRecord) {
+    	List<String> listTemp = VaultCollections.newList();
+    	listTemp.add(REPROCESSING_REQUIRED);
+    	inputRecord.getNew().setValue(COUNTRY_PROCESSING, listTemp);
 
-        Log.exit(methodName);
+    	ReprocessingFlagContext.get().markFlagged("submission__v", inputRecord.getNew().getValue("id", ValueType.STRING));
     }
+
     /**
    	 * Format the country code to match picklist api name. For example, "USA" becomes "usa__c".
    	 *
@@ -190,7 +226,7 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 
 		while (iterator.hasNext()) {
             QueryResult queryResult = iterator.next();
-            String country = formatCountryCode(queryResult.getValue("market1__cr.country_code__rim", ValueType.STRING));
+            String country = CountryIndex.toPicklistValue(queryResult.getValue("market1__cr.country_code__rim", ValueType.STRING));
 
             if (country.equals("")) {
             	sErrorMessage += sErrorMessage + "Invalid country data for " + country;
@@ -238,31 +274,21 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 	    	}
 
 			if (setCountriesToAdd.size() > 0) {
-				String queryContains = "";
-
-	            for (String s : setCountriesToAdd) {
-	                if (!queryContains.equals(""))
-	                    queryContains += ",";
-
-	                queryContains += "'" + (s.substring(0, s.length() - 3)).toUpperCase() + "'";
-	            }
-
 	            RecordService recordService = ServiceLocator.locate(RecordService.class);
-				QueryService queryService = ServiceLocator.locate(QueryService.class);
-
-				QueryResponse queryResponse = queryService.query("select id, country_code__rim, name__v from country__v where country_code__rim contains (" + queryContains + ")");
-				Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
+				CountryIndex countryIndex = CountryIndex.get();
 
 				List<Record> listRecord = VaultCollections.newList();
 
-	            while (iterator.hasNext()) {
-	                QueryResult queryResult = iterator.next();
+				for (String s : setCountriesToAdd) {
+					Country country = countryIndex.getByPicklistValue(s);
+					if (country == null) continue;
+					String countryId = country.getId();
 
 	                Record r = recordService.newRecord("submission_country__rim");
 
 	                r.setValue("submission__rim", submissionId);
 	                //r.setValue("name__v", queryResult.getValue("name__v", ValueType.STRING));
-	                r.setValue("country__rim", queryResult.getValue("id", ValueType.STRING));
+	                r.setValue("country__rim", countryId);
 
 	                List<String> orion = VaultCollections.newList();
 	                orion.add("no__c");
@@ -281,7 +307,7 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 	    				recordService.batchSaveRecords(batchRecord)
 	    					.onSuccesses(batchOperationSuccess -> {
 	    						batchOperationSuccess.stream().forEach(success -> {
-	    							Log.debug("Successfully created/updated record with id: " + success.getRecordId() + " for object [submission_country__rim]");
+	    							Log.debug("Successfully created/updated record with id: {} for object [submission_country__rim]", success.getRecordId());
 	    							});
 	    					})
 	    					.onErrors(batchOperationErrors -> {
@@ -290,7 +316,7 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 	    								int errPosition = error.getInputPosition();
 	    								String id = listRecord.get(errPosition).getValue("id", ValueType.STRING);
 	    								final String message = "Error creating submission countries " + errMsg;
-    									Log.debug(message + ", record id:" + id);
+    									Log.debug("{}, record id:{}", message, id);
     									throw new RollbackException("OPERATION_NOT_ALLOWED", message);
 	    							});
 	    					}).execute();
@@ -333,7 +359,8 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 		Map<String,List<String>> mapSubmissionCountries = VaultCollections.newMap();
 
 		//String SINGLE_QUOTE = String.valueOf((char) 39);
-		String query = "select id,country__rimr.country_code__rim,country__rimr.name__v from submission_country__rim where submission__rim='" + submissionId + "'";
+		String query = "select id,country__rim from submission_country__rim where submission__rim='" + submissionId + "'";
+		CountryIndex countryIndex = CountryIndex.get();
 
 		QueryService queryService = ServiceLocator.locate(QueryService.class);
 		QueryResponse queryResponse = queryService.query(query);
@@ -341,14 +368,15 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 
 		while (iterator.hasNext()) {
 		    QueryResult queryResult = iterator.next();
-		    String country = formatCountryCode(queryResult.getValue("country__rimr.country_code__rim", ValueType.STRING));
+		    Country country = countryIndex.getById(queryResult.getValue("country__rim", ValueType.STRING));
+		    if (country == null) continue;
 
 		    List<String> l = VaultCollections.newList();
 		    l.add(queryResult.getValue("id", ValueType.STRING));  // 0
-		    l.add(queryResult.getValue("country__rimr.country_code__rim", ValueType.STRING));  // 1
-		    l.add(queryResult.getValue("country__rimr.name__v", ValueType.STRING));  // 2
+		    l.add(country.getCode());  // 1
+		    l.add(country.getName());  // 2
 
-		    mapSubmissionCountries.put(country, l);
+		    mapSubmissionCountries.put(country.getPicklistValue(), l);
 		}
 
 		Log.exit(methodName);
@@ -392,7 +420,7 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 				recordService.batchSaveRecords(batchRecord)
 					.onSuccesses(batchOperationSuccess -> {
 						batchOperationSuccess.stream().forEach(success -> {
-							Log.debug("Successfully created/updated record with id: " + success.getRecordId() + " for object [" + OBJECT_DISPATCH + "]");
+							Log.debug("Successfully created/updated record with id: {} for object [{}]", success.getRecordId(), OBJECT_DISPATCH);
 							dispatchedIds.add(success.getRecordId());
 							});
 					})
@@ -402,7 +430,7 @@ public class SubmissionDispatchHandler implements RecordTrigger {
 								int errPosition = error.getInputPosition();
 								String id = listRecord.get(errPosition).getValue("id", ValueType.STRING);
 								final String message = "Error creating submission dispatches: " + errMsg;
-								Log.debug(message + ", record id:" + id);
+								Log.debug("{}, record id:{}", message, id);
 								throw new RollbackException("OPERATION_NOT_ALLOWED", message);
 							});
 					}).execute();
@@ -440,18 +468,6 @@ public class SubmissionDispatchHandler implements RecordTrigger {
     	}
     	Log.exit(methodName);
     }
-    /**
-	 * Format the country code to match picklist api name. For example, "USA" becomes "usa__c".
-	 *
-	 * @param sCountry
-	 *            - the 3 char iso country code
-	 * @return
-	 *            - formatted api name of the country code
-	 */
-    private String formatCountryCode(String sCountry) {
-    	if (sCountry == null || sCountry.equals("")) return "";
-    	else return sCountry.toLowerCase() + "__c";
-    }
     /**
   	 * Determine if the two objects are equal
   	 *
@@ -15,6 +15,7 @@
  *    
  * Revision:
  * 2020-05-01: 2.8 Release. 
+ * 2023-03-14: Query pending recipients for all changed submissions at once.
  *---------------------------------------------------------------------
  * Copyright (c) 2020 Veeva Systems Inc.  All Rights Reserved.
  *      This code is based on pre-existing content developed and
@@ -25,10 +26,12 @@
 package com.veeva.vault.custom.triggers;
 
 import java.util.List;
+import java.util.Map;
 
 import com.veeva.vault.custom.util.QueryServiceUtil;
 import com.veeva.vault.custom.util.RecordServiceUtil;
 import com.veeva.vault.custom.util.TriggerUtil;
+import com.veeva.vault.custom.util.VpsVQLHelper;
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.ValueType;
 import com.veeva.vault.sdk.api.core.VaultCollections;
@@ -50,37 +53,33 @@ public class SubmissionDispatchRecipient implements RecordTrigger {
 	private static final String STATE_FINAL = "final_state__c";
 	private static final String STATE_ACTIVE = "active_state__c";
 	private static final String FIELD_PENDING = "pending__c";
-	private static final String VQL_PENDING_DISPATCH_RECIPIENT = "SELECT id FROM dispatch_recipient__c "
-			+ "WHERE pending__c=true AND submission__c={submission_id}";
+	private static final String VQL_PENDING_DISPATCH_RECIPIENT = "SELECT id, submission__c FROM dispatch_recipient__c "
+			+ "WHERE pending__c=true AND submission__c CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
 	
     public void execute(RecordTriggerContext recordTriggerContext) {    
-    	RecordService recordService = ServiceLocator.locate(RecordService.class);
-    	List<Record> recordList = VaultCollections.newList();
-    	List<Record> recordDeleteList = VaultCollections.newList();
+    	Map<String, String> submissionStates = VaultCollections.newMap();
 		for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
 			// Detect if a state has changed on the submission 
 			if (TriggerUtil.fieldChanged(inputRecord, FIELD_LIFECYCLE_STATE, ValueType.STRING, recordTriggerContext.getRecordEvent())) {
-				String submissionId = inputRecord.getNew().getValue("id", ValueType.STRING);
 				String state = inputRecord.getNew().getValue(FIELD_LIFECYCLE_STATE, ValueType.STRING);
-				
-				// Find all the existing dispatch recipient where pending is true for this submission.
-				QueryResponse queryResponse = QueryServiceUtil.query(VQL_PENDING_DISPATCH_RECIPIENT
-						.replace("{submission_id}", "'" + submissionId + "'"));
-				queryResponse.streamResults().forEach(queryResult -> {
-					Record record = recordService.newRecordWithId(DISPATCH_RECIPIENT_OBJECT, queryResult.getValue("id", ValueType.STRING));
-					// if the new state is final, set pending to true
-					if (state.equals(STATE_FINAL)) {
-						boolean pending = false;
-						record.setValue(FIELD_PENDING, pending);
-						recordList.add(record);
-					// if the new state is active, add this record to be deleted.	
-					} else if (state.equals(STATE_ACTIVE)) {
-						recordDeleteList.add(record);
-					}
-				});
+				if (STATE_FINAL.equals(state) || STATE_ACTIVE.equals(state)) {
+					submissionStates.put(inputRecord.getNew().getValue("id", ValueType.STRING), state);
+				}
 			}
 		}
 		
+		if (submissionStates.isEmpty()) {
+			return;
+		}
+		
+		List<Record> recordList = VaultCollections.newList();
+		List<Record> recordDeleteList = VaultCollections.newList();
+		
+		// Find all the existing dispatch recipients where pending is true; the shared builder splits the submissions into chunked queries
+		for (String query : VpsVQLHelper.buildChunkedVQL(VQL_PENDING_DISPATCH_RECIPIENT, submissionStates.keySet(), true)) {
+			retrievePendingRecipients(query, submissionStates, recordList, recordDeleteList);
+		}
+		
 		if (recordList.size() > 0) {
 			RecordServiceUtil.updateRecordList(recordList, DISPATCH_RECIPIENT_LABEL);
 		}
@@ -89,4 +88,36 @@ public class SubmissionDispatchRecipient implements RecordTrigger {
 			RecordServiceUtil.deleteRecordList(recordDeleteList, DISPATCH_RECIPIENT_LABEL);
 		}
     }
-}
\ No newline at end of file
+    
+    /**
+     * Queries the pending dispatch recipients for a chunk of submissions and splits
+     * them by the new state of their submission.
+     * 
+     * @param query
+     *            - the pending recipient query for a chunk of submissions
+     * @param submissionStates
+     *            - new state of each changed submission
+     * @param recordList
+     *            - recipients to set pending to false (final state)
+     * @param recordDeleteList
+     *            - recipients to delete (active state)
+     */
+    private void retrievePendingRecipients(String query, Map<String, String> submissionStates,
+    		List<Record> recordList, List<Record> recordDeleteList) {
+    	RecordService recordService = ServiceLocator.locate(RecordService.class);
+		QueryResponse queryResponse = QueryServiceUtil.query(query);
+		queryResponse.streamResults().forEach(queryResult -> {
+			String state = submissionStates.get(queryResult.getValue("submission__c", ValueType.STRING));
+			Record record = recordService.newRecordWithId(DISPATCH_RECIPIENT_OBJECT, queryResult.getValue("id", ValueType.STRING));
+			// if the new state is final, set pending to false
+			if (STATE_FINAL.equals(state)) {
+				boolean pending = false;
+				record.setValue(FIELD_PENDING, pending);
+				recordList.add(record);
+			// if the new state is active, add this record to be deleted.	
+			} else if (STATE_ACTIVE.equals(state)) {
+				recordDeleteList.add(record);
+			}
+		});
+    }
+}
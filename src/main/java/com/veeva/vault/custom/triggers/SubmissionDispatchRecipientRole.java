@@ -10,6 +10,9 @@
  *    
  * Revision:
  * 2020-05-01: 2.8 Release. 
+ * 2023-03-14: Stream the dispatch x user cross product in chunks, skip
+ *             existing recipients and hand very large cross products
+ *             to a background job.
  *---------------------------------------------------------------------
  * Copyright (c) 2020 Veeva Systems Inc.  All Rights Reserved.
  *      This code is based on pre-existing content developed and
@@ -21,14 +24,18 @@
 package com.veeva.vault.custom.triggers;
 
 import java.util.List;
+import java.util.Set;
 
+import com.veeva.vault.custom.jobs.VpsDispatchRecipientJob;
 import com.veeva.vault.custom.model.DispatchRecordContext;
-import com.veeva.vault.custom.util.RecordServiceUtil;
+import com.veeva.vault.custom.util.Log;
+import com.veeva.vault.custom.util.VpsDispatchRecipientWriter;
+import com.veeva.vault.custom.util.VpsUtilHelper;
 import com.veeva.vault.sdk.api.core.RequestContext;
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.VaultCollections;
-import com.veeva.vault.sdk.api.data.Record;
-import com.veeva.vault.sdk.api.data.RecordService;
+import com.veeva.vault.sdk.api.job.JobParameters;
+import com.veeva.vault.sdk.api.job.JobService;
 import com.veeva.vault.sdk.api.role.RecordRoleChange;
 import com.veeva.vault.sdk.api.role.RecordRoleEvent;
 import com.veeva.vault.sdk.api.role.RecordRoleTrigger;
@@ -41,12 +48,8 @@ public class SubmissionDispatchRecipientRole implements RecordRoleTrigger {
 
 	private static final String DISPATCH_CONTEXT ="DISPATCH";
 	private static final String DISPATCH_ROLE ="viewer__v";
-	private static final String DISPATCH_RECIPIENT_LABEL = "Dispatch Recipients";
-	private static final String DISPATCH_RECIPIENT_OBJECT ="dispatch_recipient__c";
-	private static final String FIELD_APPLICATION ="application__c";
-	private static final String FIELD_SUBMISSION ="submission__c";
-	private static final String FIELD_DISPATCH ="dispatch__c";
-	private static final String FIELD_USER ="user__c";
+	// Cross products larger than this are created by VpsDispatchRecipientJob
+	private static final int BACKGROUND_THRESHOLD = 5000;
 	
 	/* 
 	 * Main Execution for when roles are updated.
@@ -56,41 +59,57 @@ public class SubmissionDispatchRecipientRole implements RecordRoleTrigger {
 	@SuppressWarnings("unchecked")
 	@Override
 	public void execute(RecordRoleTriggerContext recordRoleTriggerContext) {
-		RecordService recordService = ServiceLocator.locate(RecordService.class);
 		DispatchRecordContext dispatchRecords = RequestContext.get().getValue(DISPATCH_CONTEXT, DispatchRecordContext.class);
 		// Only if there is a dispatch, then we fire this trigger
 		if (dispatchRecords != null && dispatchRecords.getDispatchIds().size() > 0) {			
-			List<Record> recordList = VaultCollections.newList();
+			Set<String> usersAdded = VaultCollections.newSet();
 			// Get the roles that got added
 			List<RecordRoleChange> rrchanges = recordRoleTriggerContext.getRecordRoleChanges(); 
 			for (RecordRoleChange rrchange : rrchanges) {
 				// Only get the viewer role
 				if (rrchange.getRole().getRoleName().equals(DISPATCH_ROLE)) {
-					List<String> usersAdded = rrchange.getUsersAdded();
-					// Only if there are new users added
-					if (usersAdded.size() > 0) {			
-						// Create a record for each dispatch/user combination
-						for (String dispatchId : dispatchRecords.getDispatchIds()) {
-							for (String user : usersAdded) {
-								Record record = recordService.newRecord(DISPATCH_RECIPIENT_OBJECT);
-								record.setValue(FIELD_APPLICATION, dispatchRecords.getApplicationId());
-								record.setValue(FIELD_SUBMISSION, dispatchRecords.getSubmissionId());
-								record.setValue(FIELD_DISPATCH,  dispatchId);
-								record.setValue(FIELD_USER, user);
-								recordList.add(record);									
-							}														
-						}											
-					}
+					usersAdded.addAll(rrchange.getUsersAdded());
 				}
 			}			
 			
-			// Bulk saves the records
-			if (recordList.size() > 0) {
-				RecordServiceUtil.updateRecordList(recordList, DISPATCH_RECIPIENT_LABEL);
+			// Only if there are new users added
+			if (usersAdded.size() > 0) {
+				List<String> dispatchIds = dispatchRecords.getDispatchIds();
+				if (dispatchIds.size() * usersAdded.size() > BACKGROUND_THRESHOLD) {
+					startDispatchRecipientJob(dispatchRecords, usersAdded);
+				} else {
+					// Create a record for each dispatch/user combination, saved in chunks
+					VpsDispatchRecipientWriter writer = new VpsDispatchRecipientWriter(
+							dispatchRecords.getApplicationId(), dispatchRecords.getSubmissionId());
+					writer.write(dispatchIds, usersAdded);
+				}
 			}
 			
 		} 
 
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * Hands the dispatch recipient creation to a background job
+	 * 
+	 * @param dispatchRecords
+	 *            - the dispatches created in this request
+	 * @param usersAdded
+	 *            - the users added to the dispatch role
+	 */
+	@SuppressWarnings("unchecked")
+	private void startDispatchRecipientJob(DispatchRecordContext dispatchRecords, Set<String> usersAdded) {
+		Set<String> dispatchIds = VaultCollections.newSet();
+		dispatchIds.addAll(dispatchRecords.getDispatchIds());
+
+		Log.debug("Starting {} for {} dispatches and {} users", VpsDispatchRecipientJob.JOB_NAME, dispatchIds.size(), usersAdded.size());
+		JobService jobService = ServiceLocator.locate(JobService.class);
+		JobParameters jobParameters = jobService.newJobParameters(VpsDispatchRecipientJob.JOB_NAME);
+		jobParameters.setValue(VpsDispatchRecipientJob.PARAM_APPLICATION_ID, dispatchRecords.getApplicationId());
+		jobParameters.setValue(VpsDispatchRecipientJob.PARAM_SUBMISSION_ID, dispatchRecords.getSubmissionId());
+		jobParameters.setValue(VpsDispatchRecipientJob.PARAM_DISPATCH_IDS, VpsUtilHelper.setToString(dispatchIds, ",", false));
+		jobParameters.setValue(VpsDispatchRecipientJob.PARAM_USER_IDS, VpsUtilHelper.setToString(usersAdded, ",", false));
+		jobService.run(jobParameters);
+	}
+	
+}
@@ -12,6 +12,9 @@
  * 2019-11-11:  2.5.1 Release: Replaced submission_format__c with dossier_format__v  
  * 2020-04-06:  2.8 Release CR00558: Adding Site Registration and Working Documents to dossier format. 
  * 					Exclude Corporate Dispatch. 
+ * 2023-03-14:  Request cached dossier format ids, chunked lead market query and insert.
+ * 2023-03-14:  Dossier formats from the request metadata cache (MetadataCache), matched ignoring case.
+ * 2023-03-14:  Enter/exit the request re-entrancy guard (NestedTriggerContext).
  *
  *---------------------------------------------------------------------
  * Copyright (c) 2020 Veeva Systems Inc.  All Rights Reserved.
@@ -22,9 +25,13 @@
  */
 package com.veeva.vault.custom.triggers;
 
+import com.veeva.vault.custom.model.MetadataCache;
+import com.veeva.vault.custom.model.NestedTriggerContext;
 import com.veeva.vault.custom.util.Log;
 import com.veeva.vault.custom.util.QueryServiceUtil;
 import com.veeva.vault.custom.util.RecordServiceUtil;
+import com.veeva.vault.custom.util.TriggerUtil;
+import com.veeva.vault.custom.util.VpsVQLHelper;
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.ValueType;
 import com.veeva.vault.sdk.api.core.VaultCollections;
@@ -32,6 +39,7 @@ import com.veeva.vault.sdk.api.data.*;
 import com.veeva.vault.sdk.api.query.QueryResponse;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -39,9 +47,12 @@ import java.util.Set;
 public class SubmissionLeadMarketCountry implements RecordTrigger {	
 
 	// R2.8 - Add Site Registration and Working Documents
-	private static final String VQL_DOSSIER_FORMAT ="SELECT id FROM controlled_vocabulary__rim "
-			+ "WHERE controlled_vocabulary_type__rim='dossier_format__v' "
-			+ "AND name__v CONTAINS ('non-eCTD','Site Registration','Working Documents')";
+	private static final String DOSSIER_FORMAT_TYPE = "dossier_format__v";
+	private static final List<String> DOSSIER_FORMATS = VaultCollections.asList("non-ectd", "site registration", "working documents");
+	// R2.8 - Exclude Corporate Dispatch Submissions
+	private static final String VQL_LEAD_MARKET = "SELECT id, application__vr.lead_market__rim FROM submission__v "
+			+ "WHERE id CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ") "
+			+ "AND object_type__vr.api_name__v!='corporate_dispatch__c'";
 	
 	
 	/**
@@ -55,33 +66,51 @@ public class SubmissionLeadMarketCountry implements RecordTrigger {
 	 */
 	public void execute(RecordTriggerContext recordTriggerContext) {
 		final String methodName = SubmissionLeadMarketCountry.class.toString() + ".execute()";
-		Log.entry("----" + methodName + "----");
+		Log.entry("----{}----", methodName);
 		
-		// Filter out only applicable records (submission = non-ectd)
-		Set<String> applicableRecords = retrieveApplicableRecords(recordTriggerContext);
-		if (applicableRecords.size() > 0) {
-			createSubmissionCountry(applicableRecords);
+		// Keep track of nested trigger
+		NestedTriggerContext nestedTriggerContext = TriggerUtil.getNestedTriggerContext();
+		nestedTriggerContext.enter(SubmissionLeadMarketCountry.class.toString());
+		try {
+			// Filter out only applicable records (submission = non-ectd)
+			Set<String> applicableRecords = retrieveApplicableRecords(recordTriggerContext);
+			if (applicableRecords.size() > 0) {
+				createSubmissionCountry(applicableRecords);
+			}
+		}
+		finally {
+			nestedTriggerContext.exit(SubmissionLeadMarketCountry.class.toString());
 		}
-		Log.exit("----" + methodName + "----");
+		Log.exit("----{}----", methodName);
 	}
 	
 	/**
 	 * 1. Find the lead market from the application in the submission
 	 * 2. Creates the submission country in batches
 	 * 
-	 * @param applicableRecords - a set of distinct submission ids, max size is 500 per batch
+	 * The lead market query is chunked by VpsVQLHelper.buildChunkedVQL; the submission
+	 * countries of each chunk are saved before the next chunk is read.
+	 * 
+	 * @param applicableRecords - a set of distinct submission ids
 	 */
-	@SuppressWarnings("unchecked")
 	private void createSubmissionCountry(Set<String> applicableRecords) {
 		final String methodName = SubmissionLeadMarketCountry.class.toString() + ".createSubmissionCountry()";
-		Log.entry("----" + methodName + "----");
+		Log.entry("----{}----", methodName);
+		for (String query : VpsVQLHelper.buildChunkedVQL(VQL_LEAD_MARKET, applicableRecords, true)) {
+			createSubmissionCountryChunk(query);
+		}
+		Log.exit("----{}----", methodName);
+	}
+	
+	/**
+	 * Queries the lead market for a chunk of submissions and creates the submission countries
+	 * 
+	 * @param query - the lead market query for a chunk of submissions
+	 */
+	@SuppressWarnings("unchecked")
+	private void createSubmissionCountryChunk(String query) {
 		RecordService recordService = ServiceLocator.locate(RecordService.class);
 		List<Record> recordList = VaultCollections.newList();
-		// Batch all the records into one query
-		// R2.8 - Exclude Corporate Dispatch Submissions
-		final String query = "SELECT id, application__vr.lead_market__rim FROM submission__v "
-				+ "WHERE id CONTAINS ('" + String.join("','", applicableRecords) + "') "
-						+ "AND object_type__vr.api_name__v!='corporate_dispatch__c'";
 		QueryResponse queryResponse = QueryServiceUtil.query(query);
         queryResponse.streamResults().forEach(queryResult -> {
             String submissionId = queryResult.getValue("id",ValueType.STRING);
@@ -92,8 +121,9 @@ public class SubmissionLeadMarketCountry implements RecordTrigger {
             record.setValue("orion_record__c", VaultCollections.asList("no__c"));
             recordList.add(record);
         });
-        RecordServiceUtil.updateRecordList(recordList, "Submission Country");
-        Log.exit("----" + methodName + "----");
+        if (recordList.size() > 0) {
+        	RecordServiceUtil.updateRecordList(recordList, "Submission Country");
+        }
 	}
 	
 	/**
@@ -105,43 +135,56 @@ public class SubmissionLeadMarketCountry implements RecordTrigger {
 	@SuppressWarnings({ "unchecked" })
 	private Set<String> retrieveApplicableRecords(RecordTriggerContext recordTriggerContext) {
 		final String methodName = SubmissionLeadMarketCountry.class.toString() + ".retrieveApplicableRecords()";
-		Log.entry("----" + methodName + "----");
+		Log.entry("----{}----", methodName);
 		Set<String> applicableRecords = VaultCollections.newSet();
-		QueryResponse queryResponse = QueryServiceUtil.query(VQL_DOSSIER_FORMAT);
-		// Get the first result id
-		//String dossierFormatIds = queryResponse.streamResults().findAll().get().getValue("id",ValueType.STRING);
-		queryResponse.streamResults().forEach(queryResult -> {
-			String dossierFormatIds = queryResult.getValue("id",ValueType.STRING);
-			Log.debug("Dossier value found:" + dossierFormatIds);
-			for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
-				String recordId = inputRecord.getNew().getValue("id", ValueType.STRING);
-				if (isDossierFormatApplicable(inputRecord.getNew(), dossierFormatIds)) {
-					Log.debug("Applicable Dossier Format detected.  Adding submission id: " + recordId + " to be processed.");
-					applicableRecords.add(recordId);
-				} else {
-					Log.debug("Submission is not applicable for Dossier Format: " + dossierFormatIds + ".  Skipping submission id: " + recordId);
-				}
+		Set<String> dossierFormatIds = retrieveDossierFormats();
+		for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
+			String recordId = inputRecord.getNew().getValue("id", ValueType.STRING);
+			if (isDossierFormatApplicable(inputRecord.getNew(), dossierFormatIds)) {
+				Log.debug("Applicable Dossier Format detected.  Adding submission id: {} to be processed.", recordId);
+				applicableRecords.add(recordId);
 			}
-			Log.exit("----" + methodName + "----, Size:" + applicableRecords.size() );
-		});
+		}
+		Log.exit("----{}----, Size:{}", methodName, applicableRecords.size());
 		
 		return applicableRecords;
 	}
 	
+	/**
+	 * Retrieves the applicable dossier format ids from the dossier format controlled
+	 * vocabulary (request metadata cache). Names are compared ignoring case, like the
+	 * CONTAINS filter of the former query.
+	 * 
+	 * @return the applicable dossier format ids
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<String> retrieveDossierFormats() {
+		Map<String, String> dossierFormats = MetadataCache.get().getVocabulary(DOSSIER_FORMAT_TYPE);
+		Set<String> dossierFormatIds = VaultCollections.newSet();
+		for (Map.Entry<String, String> dossierFormat : dossierFormats.entrySet()) {
+			String name = dossierFormat.getKey();
+			if (name != null && DOSSIER_FORMATS.contains(name.toLowerCase())) {
+				Log.debug("Dossier value found:{}", dossierFormat.getValue());
+				dossierFormatIds.add(dossierFormat.getValue());
+			}
+		}
+		return dossierFormatIds;
+	}
+	
 	/**
 	 * Checks if a submission dossier format is applicable.  If submission format does not exist, it returns false.
 	 * 
 	 * @param record - the submission record to validate
-	 * @param formatId - the id of the dossier record for controlled vocabulary
+	 * @param dossierFormatIds - the applicable dossier format ids from controlled vocabulary
 	 * @return true if submission format is applicable, false otherwise
 	 * 
 	 * Notes:
 	 * submission_format__c has been deprecated as of R2.5.1.
 	 * Using dossier_format__v instead.
 	 */
-	private boolean isDossierFormatApplicable(Record record, String formatId) {	
+	private boolean isDossierFormatApplicable(Record record, Set<String> dossierFormatIds) {	
 		String format = record.getValue("dossier_format__v", ValueType.STRING);
-		return (format != null && format.equals(formatId));
+		return format != null && dossierFormatIds.contains(format);
 	}
 	
-}
\ No newline at end of file
+}
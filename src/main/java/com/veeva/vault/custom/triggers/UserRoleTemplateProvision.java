@@ -1,12 +1,14 @@
 package com.veeva.vault.custom.triggers;
 
-import com.veeva.vault.custom.services.VpsUserRoleTemplateProvisionService;
+import com.veeva.vault.custom.services.VpsUserRoleReconciliationService;
 import com.veeva.vault.sdk.api.core.RollbackException;
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
 import com.veeva.vault.sdk.api.core.VaultRuntimeException;
 import com.veeva.vault.sdk.api.data.*;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -15,36 +17,63 @@ import java.util.List;
  * Author: Todd Taylor
  * Date: 27 July 2017
  *
- * Reprocess the user role provisioning data by performing an update
- * on the user role template assignment object. Run conditions:
+ * Reconcile the user role provisioning data of the template group with
+ * the changed templates in a job. Run conditions:
  * 1. Active record
  * 2. Record was just inactivated (trigger.old = active, trigger.new = inactive
- * 
+ *
  * UI Changes only (this is for setup data in the browser)
+ *
+ * 2023-03-14: achinchalkar@veeva - only the difference between the desired and the
+ *    existing user role setup records is written (VpsUserRoleReconciliationJob),
+ *    replacing the delete of all records in UserRoleTemplateProvisionChanges and the
+ *    re-save of every assignment. The trigger only passes the previous templates.
  */
 @RecordTriggerInfo(object = "user_role_template__c", events = {RecordEvent.AFTER_UPDATE}, name="user_role_template_provision__c")
 public class UserRoleTemplateProvision implements RecordTrigger   {
+    @SuppressWarnings("unchecked")
     public void execute(RecordTriggerContext recordTriggerContext)  {
 
-		VpsUserRoleTemplateProvisionService vpsUserRoleTemplateProvisionService =
-				ServiceLocator.locate(VpsUserRoleTemplateProvisionService.class);
+		VpsUserRoleReconciliationService vpsUserRoleReconciliationService =
+				ServiceLocator.locate(VpsUserRoleReconciliationService.class);
+
+		try {
+			// previous versions of the changed templates by template group, a template moved between groups affects both
+			Map<String, List<Record>> mapOldTemplates = VaultCollections.newMap();
+
+			for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
+				List<String> listStatus = inputRecord.getNew().getValue("status__v", ValueType.PICKLIST_VALUES);
+				String statusCurrent = listStatus.get(0);
 
-		for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {			
-			try {							
-				List<String> listStatus = inputRecord.getNew().getValue("status__v", ValueType.PICKLIST_VALUES);				
-				String statusCurrent = listStatus.get(0);	
-				
 				listStatus = inputRecord.getOld().getValue("status__v", ValueType.PICKLIST_VALUES);
-				String statusPrevious = listStatus.get(0);	
-				
-				if (statusCurrent.equals("active__v") || (statusCurrent.equals("inactive__v") && statusPrevious.equals("active__v")))
-					vpsUserRoleTemplateProvisionService.refreshUserProvisioningRecords(inputRecord.getNew().getValue("template_group__c", ValueType.STRING));
+				String statusPrevious = listStatus.get(0);
+
+				if (statusCurrent.equals("active__v") || (statusCurrent.equals("inactive__v") && statusPrevious.equals("active__v"))) {
+					addChange(mapOldTemplates, inputRecord.getNew().getValue("template_group__c", ValueType.STRING), inputRecord);
+					addChange(mapOldTemplates, inputRecord.getOld().getValue("template_group__c", ValueType.STRING), inputRecord);
+				}
 			}
-			catch(VaultRuntimeException e) {
-				 RollbackException rollbackException = new RollbackException("OPERATION_NOT_ALLOWED",
-         	            e.getMessage() + ".  If you feel this is an error, please contact your IT Administrator.");
-         	    throw rollbackException;
-           }
-		}    		     	   		
+
+			for (String templateGroupId : mapOldTemplates.keySet()) {
+				vpsUserRoleReconciliationService.startReconciliation(templateGroupId, mapOldTemplates.get(templateGroupId));
+			}
+		}
+		catch(VaultRuntimeException e) {
+			 RollbackException rollbackException = new RollbackException("OPERATION_NOT_ALLOWED",
+					e.getMessage() + ".  If you feel this is an error, please contact your IT Administrator.");
+			throw rollbackException;
+		}
     }
-}
\ No newline at end of file
+
+	@SuppressWarnings("unchecked")
+	private void addChange(Map<String, List<Record>> mapOldTemplates, String templateGroupId, RecordChange inputRecord) {
+		if (templateGroupId == null) return;
+
+		if (!mapOldTemplates.containsKey(templateGroupId)) {
+			mapOldTemplates.put(templateGroupId, VaultCollections.newList());
+		}
+		if (!mapOldTemplates.get(templateGroupId).contains(inputRecord.getOld())) {
+			mapOldTemplates.get(templateGroupId).add(inputRecord.getOld());
+		}
+	}
+}
@@ -1,24 +1,14 @@
 package com.veeva.vault.custom.triggers;
 
-import com.veeva.vault.sdk.api.core.BatchOperationError;
-import com.veeva.vault.sdk.api.core.RequestContext;
-import com.veeva.vault.sdk.api.core.RollbackException;
-import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.custom.util.QueryServiceUtil;
 import com.veeva.vault.sdk.api.core.TriggerOrder;
 import com.veeva.vault.sdk.api.core.ValueType;
 import com.veeva.vault.sdk.api.core.VaultCollections;
 import com.veeva.vault.sdk.api.core.VaultRuntimeException;
 import com.veeva.vault.sdk.api.data.*;
-import com.veeva.vault.sdk.api.picklist.Picklist;
-import com.veeva.vault.sdk.api.picklist.PicklistService;
-import com.veeva.vault.sdk.api.query.QueryCountRequest;
-import com.veeva.vault.sdk.api.query.QueryResponse;
-import com.veeva.vault.sdk.api.query.QueryResult;
-import com.veeva.vault.sdk.api.query.QueryService;
 
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * Object: user_role_template__c
@@ -37,45 +27,33 @@ public class UserRoleTemplateSaveValidation implements RecordTrigger  {
 
 	private static final String ERROR_INSERT = "Existing User Role Provisioning records exist for this Template Group. New records must be created as inactive, then activated. This ensures proper re-processing of all users in the Template Group."; 
 	private static final String ERROR_DELETE = "Existing User Role Provisioning records exist for this Template Group. Active template records cannot be deleted. Please inactivate the record, then delete.";
+	private static final String QUERY_ACTIVE_ASSIGNMENT = "status__v = 'active__v' and user__cr.status__v = 'active__v'";
 	
-    public void execute(RecordTriggerContext recordTriggerContext)  {    	
+    @SuppressWarnings("unchecked")
+	public void execute(RecordTriggerContext recordTriggerContext)  {
+		// Only active templates are restricted, collect them and their template groups for one query per batch
+		List<RecordChange> activeRecords = VaultCollections.newList();
+		Set<String> templateGroups = VaultCollections.newSet();
 		for (RecordChange inputRecord : recordTriggerContext.getRecordChanges()) {
+			Record record = getRecord(recordTriggerContext, inputRecord);
+			if (getStatus(record).equals("active__v")) {
+				activeRecords.add(inputRecord);
+				templateGroups.add(record.getValue("template_group__c", ValueType.STRING));
+			}
+		}
+		
+		if (activeRecords.isEmpty()) {
+			return;
+		}
+		
+		try {
+			Set<String> provisionedGroups = QueryServiceUtil.retrieveParentsWithChildren("user_role_template_assignment__c",
+					"template_group__c", templateGroups, QUERY_ACTIVE_ASSIGNMENT);
 			
-			try {     
-				String SINGLE_QUOTE = String.valueOf((char) 39);
-				
-				boolean bExistingRecords = false;
-				String templateGroup = "";
-				String status = "";
+			for (RecordChange inputRecord : activeRecords) {
+				String templateGroup = getRecord(recordTriggerContext, inputRecord).getValue("template_group__c", ValueType.STRING);
 				
-				if (recordTriggerContext.getRecordEvent() == RecordEvent.BEFORE_DELETE) {
-					templateGroup = inputRecord.getOld().getValue("template_group__c", ValueType.STRING);
-					List<String> listStatus = inputRecord.getOld().getValue("status__v", ValueType.PICKLIST_VALUES);
-					status = listStatus.get(0);	    			 	
-				}
-				else { 
-					templateGroup = inputRecord.getNew().getValue("template_group__c", ValueType.STRING);
-					List<String> lCurrent = inputRecord.getNew().getValue("status__v", ValueType.PICKLIST_VALUES);
-					status = lCurrent.get(0);
-					
-				}
-	    		String query = "select id from user_role_template_assignment__c where template_group__c = " + SINGLE_QUOTE + templateGroup + SINGLE_QUOTE + " and status__v=" + SINGLE_QUOTE + "active__v" + SINGLE_QUOTE;
-				query += " and user__cr.status__v = 'active__v'";
-	    		query += " LIMIT 1";
-
-	    		/*QueryService queryService = ServiceLocator.locate(QueryService.class);
-	    		QueryResponse queryResponse = queryService.query(query);
-	    		Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
-	
-	    		while (iterator.hasNext()) {
-	                QueryResult qr = iterator.next();     
-	                bExistingRecords = true;
-	    		}*/
-
-				long queryResultCount = getQueryResultCount(query);
-				bExistingRecords = queryResultCount > 0;
-
-	    		if (bExistingRecords && status.equals("active__v")) {
+	    		if (provisionedGroups.contains(templateGroup)) {
 	    			if (recordTriggerContext.getRecordEvent() == RecordEvent.BEFORE_INSERT) {
 	    				inputRecord.setError("OPERATION_NOT_ALLOWED",ERROR_INSERT);
 	    			}
@@ -85,31 +63,25 @@ public class UserRoleTemplateSaveValidation implements RecordTrigger  {
 	    			}	    			
 	    		}				
 			}
-			catch(VaultRuntimeException e) {
+		}
+		catch(VaultRuntimeException e) {
+			// only the active templates depend on the failed check
+			for (RecordChange inputRecord : activeRecords) {
 				inputRecord.setError("OPERATION_NOT_ALLOWED",
                         e.getMessage() + ".  If you feel this is an error, please contact your IT Administrator.");
-           }
+			}
 		}    		     	   		
     }
-
-	public long getQueryResultCount(String query) {
-		QueryService queryService = ServiceLocator.locate(QueryService.class);
-		QueryCountRequest queryCountRequest = queryService
-				.newQueryCountRequestBuilder()
-				.withQueryString(query)
-				.build();
-
-		final long[] queryResultCount = {0};
-
-		queryService.count(queryCountRequest)
-				.onSuccess(queryCountResponse -> {
-					queryResultCount[0] = queryCountResponse.getTotalCount();
-				})
-				.onError(queryOperationError -> {
-					//String err = queryOperationError.getMessage();
-				})
-				.execute();
-
-		return queryResultCount[0];
+    
+	private Record getRecord(RecordTriggerContext recordTriggerContext, RecordChange inputRecord) {
+		if (recordTriggerContext.getRecordEvent() == RecordEvent.BEFORE_DELETE) {
+			return inputRecord.getOld();
+		}
+		return inputRecord.getNew();
+	}
+	
+	private String getStatus(Record record) {
+		List<String> listStatus = record.getValue("status__v", ValueType.PICKLIST_VALUES);
+		return listStatus.get(0);
 	}
-}
\ No newline at end of file
+}
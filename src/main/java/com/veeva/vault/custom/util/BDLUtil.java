@@ -1,21 +1,17 @@
 package com.veeva.vault.custom.util;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import com.veeva.vault.custom.model.BDLActivityObjectType;
-import com.veeva.vault.custom.model.BDLTaskObjectType;
+import com.veeva.vault.custom.model.MetadataCache;
 import com.veeva.vault.custom.model.SDKSetting;
 import com.veeva.vault.custom.modules.BDLPopulateMultiAgreementTaskQuery;
-import com.veeva.vault.sdk.api.core.RequestContext;
 import com.veeva.vault.sdk.api.core.StringUtils;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
 import com.veeva.vault.sdk.api.core.ValueType;
 import com.veeva.vault.sdk.api.core.VaultCollections;
 import com.veeva.vault.sdk.api.data.RecordChange;
 import com.veeva.vault.sdk.api.query.QueryResponse;
-import com.veeva.vault.sdk.api.query.QueryResult;
 
 /**
  * Author: Bryan Chan 
@@ -29,6 +25,8 @@ import com.veeva.vault.sdk.api.query.QueryResult;
 @UserDefinedClassInfo
 public class BDLUtil {
 	
+	private static final String OBJECT_ACTIVITY = "bdl_multi_agreement_activity__c";
+	private static final String OBJECT_TASK = "multi_agreement_tasks__c";
 	
 	@SuppressWarnings("unchecked")
 	public static List<SDKSetting> retrieveAllSDKSettings() {
@@ -52,50 +50,38 @@ public class BDLUtil {
         });
 		
 		
-		Log.exit(methodName + ", SDK Setting Size:" + sdkSettings.size());
+		Log.exit("{}, SDK Setting Size:{}", methodName, sdkSettings.size());
 		return sdkSettings;
 	}
 	
 	/**
+	 * Returns the active object types of the BDL activity or task object.  Both objects are
+	 * loaded with one query into the request metadata cache.
 	 * 
+	 * @param objectName bdl_multi_agreement_activity__c or multi_agreement_tasks__c
+	 * @return api name by object type id for activities, object type id by api name for tasks
 	 */
+	@SuppressWarnings("unchecked")
 	public static Map<String, String> retrieveBDLObjectTypeMap(String objectName) {
 		final String methodName = BDLUtil.class.toString() + ".retrieveObjectTypeMap()";
 		Log.entry(methodName);
 		
-		BDLActivityObjectType activityObjectType = RequestContext.get().getValue("BDL_ACTIVITY_OBJECT_TYPE", BDLActivityObjectType.class);
-		BDLTaskObjectType taskObjectType = RequestContext.get().getValue("BDL_TASK_OBJECT_TYPE", BDLTaskObjectType.class);
-	 	// This is the first time a trigger runs, grab all SDK Mapping
-	 	if (activityObjectType == null || taskObjectType == null) {
-	 		activityObjectType = new BDLActivityObjectType();	
-	 		taskObjectType = new BDLTaskObjectType();	
-	 		final String query = "SELECT id,object_name__v,api_name__v FROM object_type__v WHERE status__v='active__v' AND object_name__v CONTAINS ('bdl_multi_agreement_activity__c','multi_agreement_tasks__c')";
-			QueryResponse queryResponse = QueryServiceUtil.query(query);
-			Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
-			while (iterator.hasNext()) {
-				QueryResult queryResult = iterator.next();
-				String id = queryResult.getValue("id", ValueType.STRING);
-				String object = queryResult.getValue("object_name__v", ValueType.STRING);
-				String apiName = queryResult.getValue("api_name__v", ValueType.STRING);
-				if (object.equals("bdl_multi_agreement_activity__c")) {
-					activityObjectType.put(id, apiName);
-				} else if (object.equals("multi_agreement_tasks__c")) { 
-					taskObjectType.put(apiName, id);
-				}
-				
-			}
-			
-	        RequestContext.get().setValue("BDL_ACTIVITY_OBJECT_TYPE", activityObjectType);
-	        RequestContext.get().setValue("BDL_TASK_OBJECT_TYPE", taskObjectType);
-	 	} 
+		MetadataCache metadataCache = MetadataCache.get();
+		metadataCache.prefetch(MetadataCache.KIND_OBJECT_TYPE, VaultCollections.asList(OBJECT_ACTIVITY, OBJECT_TASK));
+		Map<String, String> objectTypes = metadataCache.getObjectTypes(objectName);
 	 	
 	 	Log.exit(methodName);
-	 	if (objectName.equals("bdl_multi_agreement_activity__c")) {
-	 		Log.debug("Activity Object Type Map found.  Size: " + activityObjectType.size());
-	 		return activityObjectType.getObjectTypes();
+	 	if (objectName.equals(OBJECT_ACTIVITY)) {
+	 		Log.debug("Activity Object Type Map found.  Size: {}", objectTypes.size());
+	 		return objectTypes;
 	 	} else {
-	 		Log.debug("Task Object Type Map found.  Size: " + taskObjectType.size());
-	 		return taskObjectType.getObjectTypes();
+	 		// tasks are looked up by api name
+	 		Map<String, String> taskObjectTypes = VaultCollections.newMap();
+	 		for (String id : objectTypes.keySet()) {
+	 			taskObjectTypes.put(objectTypes.get(id), id);
+	 		}
+	 		Log.debug("Task Object Type Map found.  Size: {}", taskObjectTypes.size());
+	 		return taskObjectTypes;
 	 	}
 	}
 	
@@ -120,7 +106,7 @@ public class BDLUtil {
 				if (objectSubType != null && objectSubType.length() > 0) {
 					// Subtype can be any field.  <Field Name>.<Field Value> 
 					// risk_management_report_type__c.risk_management_plan__c
-					Log.debug("SUBTYPE: " + objectSubType);
+					Log.debug("SUBTYPE: {}", objectSubType);
 					String[] subType = StringUtils.split(objectSubType, "\\.");
 					String fieldName = subType[0];
 					String fieldValue = subType[1];
@@ -136,7 +122,7 @@ public class BDLUtil {
 		}
 		
 		if (setting != null) {
-			Log.debug("Setting Found: [" + setting.getName() + "]");
+			Log.debug("Setting Found: [{}]", setting.getName());
 		}
 		
 		return setting;
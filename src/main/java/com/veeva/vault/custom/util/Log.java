@@ -1,47 +1,104 @@
 package com.veeva.vault.custom.util;
 
+import java.util.function.Supplier;
+
 import com.veeva.vault.sdk.api.core.LogService;
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
 
 /**
- * Author: Bryan Chan 
- * Date: 24 April 2018 
- * 
+ * Author: Bryan Chan
+ * Date: 24 April 2018
+ *
  * Description: Wrapper class for the actual LogService
- * 
+ *
+ * Revision:
+ * 2023-03-14: Level gated.  Messages accept {} parameters or a Supplier, so
+ *             arguments are only formatted when the level is enabled.
+ *             ENTRY/EXIT tracing logs at DEBUG so it is off in production.
+ *             The SDK does not allow mutable static state, so the LogService
+ *             is located once per call and only the level check runs when
+ *             debug is disabled.
+ *
  */
 
 @UserDefinedClassInfo
 public class Log {
-	
+
 	public static void debug(String message) {
-		LogService log = ServiceLocator.locate(LogService.class);
-		log.debug(message);
+		LogService log = logService();
+		if (log.isDebugEnabled()) {
+			log.debug(message);
+		}
+	}
+
+	public static void debug(String message, Object... params) {
+		LogService log = logService();
+		if (log.isDebugEnabled()) {
+			log.debug(message, params);
+		}
+	}
+
+	public static void debug(Supplier<String> message) {
+		LogService log = logService();
+		if (log.isDebugEnabled()) {
+			log.debug(message.get());
+		}
 	}
-	
+
 	public static void info(String message) {
-		LogService log = ServiceLocator.locate(LogService.class);
-		log.info(message);
+		logService().info(message);
+	}
+
+	public static void info(String message, Object... params) {
+		logService().info(message, params);
 	}
 
 	public static void error(String message) {
-		LogService log = ServiceLocator.locate(LogService.class);
-		log.error(message);
+		logService().error(message);
+	}
+
+	public static void error(String message, Object... params) {
+		logService().error(message, params);
 	}
-	
+
+	public static boolean isDebugEnabled() {
+		return logService().isDebugEnabled();
+	}
+
 	public static boolean isDebugEnabled(String message) {
-		LogService log = ServiceLocator.locate(LogService.class);
-		return log.isDebugEnabled();
+		return isDebugEnabled();
 	}
-	
+
 	public static void entry(String message) {
-		LogService log = ServiceLocator.locate(LogService.class);
-		log.info("[ENTRY] " + message);
+		LogService log = logService();
+		if (log.isDebugEnabled()) {
+			log.debug("[ENTRY] " + message);
+		}
+	}
+
+	public static void entry(String message, Object... params) {
+		LogService log = logService();
+		if (log.isDebugEnabled()) {
+			log.debug("[ENTRY] " + message, params);
+		}
 	}
-	
+
 	public static void exit(String message) {
-		LogService log = ServiceLocator.locate(LogService.class);
-		log.info("[EXIT] " + message);
+		LogService log = logService();
+		if (log.isDebugEnabled()) {
+			log.debug("[EXIT] " + message);
+		}
+	}
+
+	public static void exit(String message, Object... params) {
+		LogService log = logService();
+		if (log.isDebugEnabled()) {
+			log.debug("[EXIT] " + message, params);
+		}
+	}
+
+	private static LogService logService() {
+		return ServiceLocator.locate(LogService.class);
 	}
-}
\ No newline at end of file
+}
@@ -1,8 +1,15 @@
 package com.veeva.vault.custom.util;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
 import com.veeva.vault.sdk.api.query.QueryResponse;
+import com.veeva.vault.sdk.api.query.QueryResult;
 import com.veeva.vault.sdk.api.query.QueryService;
 
 /**
@@ -17,7 +24,46 @@ public class QueryServiceUtil {
 
 	public static QueryResponse query(String vqlQuery) {
 		QueryService queryService = ServiceLocator.locate(QueryService.class);
-		Log.debug("Executing VQL: " + vqlQuery);
+		Log.debug("Executing VQL: {}", vqlQuery);
 		return queryService.query(vqlQuery);
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Finds which of the given parent ids have at least one matching child record.
+	 * One query is issued per chunk of ids (instead of one per parent) and the
+	 * distinct parent ids found are returned for O(1) per record checks. Reading
+	 * stops as soon as every parent has been found, so a trigger batch (one chunk)
+	 * does not read all the children of its parents.
+	 * 
+	 * @param objectName - the object to query (the child object)
+	 * @param parentField - the field on the object holding the parent id
+	 * @param parentIds - the parent ids to check
+	 * @param predicate - additional VQL criteria for the children, or null
+	 * @return the parent ids that have at least one matching child
+	 */
+	@SuppressWarnings("unchecked")
+	public static Set<String> retrieveParentsWithChildren(String objectName, String parentField, Collection<String> parentIds, String predicate) {
+		Set<String> parentsWithChildren = VaultCollections.newSet();
+		StringBuilder baseQuery = new StringBuilder()
+				.append("SELECT ").append(parentField)
+				.append(" FROM ").append(objectName)
+				.append(" WHERE ").append(parentField).append(" CONTAINS (").append(VpsVQLHelper.VALUES_TOKEN).append(")");
+		if (predicate != null && !predicate.isEmpty()) {
+			baseQuery.append(" AND ").append(predicate);
+		}
+		
+		Set<String> distinctParentIds = VaultCollections.newSet();
+		distinctParentIds.addAll(parentIds);
+		distinctParentIds.remove(null);
+		for (String vqlQuery : VpsVQLHelper.buildChunkedVQL(baseQuery.toString(), distinctParentIds, true)) {
+			Iterator<QueryResult> iterator = query(vqlQuery).streamResults().iterator();
+			while (iterator.hasNext() && parentsWithChildren.size() < distinctParentIds.size()) {
+				parentsWithChildren.add(iterator.next().getValue(parentField, ValueType.STRING));
+			}
+			if (parentsWithChildren.size() == distinctParentIds.size()) {
+				break;
+			}
+		}
+		return parentsWithChildren;
+	}
+}
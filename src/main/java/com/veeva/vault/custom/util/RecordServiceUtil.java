@@ -32,7 +32,9 @@ public class RecordServiceUtil {
 	public static void updateRecordList(List<Record> recordList, String objectName) {
 		final String methodName = RecordServiceUtil.class.toString() + ".updateRecordList()";
 		RecordService recordService = ServiceLocator.locate(RecordService.class);
-		Log.entry(methodName + ", Record Size: " + recordList.size());
+		Log.entry("{}, Record Size: {}", methodName, recordList.size());
+		// Checked once so the per record success logging is skipped when debug is off
+		final boolean debugEnabled = Log.isDebugEnabled();
 		
 		if (recordList.size() > 0) {
 			List<List<Record>> batchRecords = partition(recordList);
@@ -41,8 +43,8 @@ public class RecordServiceUtil {
 				Log.debug("Saving batch START");
 				recordService.batchSaveRecords(batchRecord)
 					.onSuccesses(batchOperationSuccess -> {
-						batchOperationSuccess.stream().forEach(success -> {
-							Log.debug("Successfully created/updated record with id: " + success.getRecordId() + " for object [" + objectName + "]");	
+						if (debugEnabled) batchOperationSuccess.stream().forEach(success -> {
+							Log.debug("Successfully created/updated record with id: {} for object [{}]", success.getRecordId(), objectName);	
 							});
 					})		
 					.onErrors(batchOperationErrors -> {
@@ -65,7 +67,7 @@ public class RecordServiceUtil {
 				Log.debug("Saving batch END");
 			}
 		}
-		Log.exit(methodName + ", Record Size: " + recordList.size());
+		Log.exit("{}, Record Size: {}", methodName, recordList.size());
 	}
 
 	/**
@@ -78,7 +80,9 @@ public class RecordServiceUtil {
 	public static void deleteRecordList(List<Record> recordList, String objectName) {
 		final String methodName = RecordServiceUtil.class.toString() + ".deleteRecordList()";
 		RecordService recordService = ServiceLocator.locate(RecordService.class);
-		Log.entry(methodName + ", Record Size: " + recordList.size());
+		Log.entry("{}, Record Size: {}", methodName, recordList.size());
+		// Checked once so the per record success logging is skipped when debug is off
+		final boolean debugEnabled = Log.isDebugEnabled();
 		
 		if (recordList.size() > 0) {
 			List<List<Record>> batchRecords = partition(recordList);
@@ -86,8 +90,8 @@ public class RecordServiceUtil {
 			for (List<Record> batchRecord : batchRecords) {
 				recordService.batchDeleteRecords(batchRecord)
 				.onSuccesses(batchOperationSuccess -> {
-					batchOperationSuccess.stream().forEach(success -> {
-							Log.debug("Successfully deleted record with id: " + success.getRecordId() + " for object [" + objectName + "]");	
+					if (debugEnabled) batchOperationSuccess.stream().forEach(success -> {
+							Log.debug("Successfully deleted record with id: {} for object [{}]", success.getRecordId(), objectName);	
 						});
 				})		
 				.onErrors(batchOperationErrors -> {
@@ -102,7 +106,7 @@ public class RecordServiceUtil {
 				}).execute();
 			}
 		}
-		Log.exit(methodName + ", Record Size: " + recordList.size());
+		Log.exit("{}, Record Size: {}", methodName, recordList.size());
 	}
 	
 	/**
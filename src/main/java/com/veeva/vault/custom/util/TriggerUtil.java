@@ -3,7 +3,6 @@ package com.veeva.vault.custom.util;
 import java.util.Set;
 
 import com.veeva.vault.custom.model.NestedTriggerContext;
-import com.veeva.vault.sdk.api.core.RequestContext;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
 import com.veeva.vault.sdk.api.core.ValueType;
 import com.veeva.vault.sdk.api.core.VaultCollections;
@@ -96,39 +95,11 @@ public class TriggerUtil {
 	}
 	
 	/**
-	 * Retrieves the nested trigger list
+	 * Retrieves the re-entrancy guard of the current request
 	 * 
 	 * @return a nested trigger context
 	 */
 	public static NestedTriggerContext getNestedTriggerContext() {
-		final String methodName = TriggerUtil.class.toString() + ".getNestedTriggerContext()";
-		Log.entry(methodName);
-		NestedTriggerContext nestedTriggerList = RequestContext.get().getValue("NESTED_TRIGGERS", NestedTriggerContext.class);
-		if (nestedTriggerList == null) {
-			nestedTriggerList = new NestedTriggerContext();
-			RequestContext.get().setValue("NESTED_TRIGGERS", nestedTriggerList);
-		}
-		Log.exit(methodName);
-		return nestedTriggerList;
-	}
-
-	
-	/**
-	 * Add your trigger to the nested trigger  list
-	 * 
-	 * @param triggerName the name of the trigger
-	 */
-	public static void addNestedTriggerContext(String triggerName) {
-		final String methodName = TriggerUtil.class.toString() + ".addNestedTriggerContext()";
-		Log.entry(methodName);
-		NestedTriggerContext nestedTriggerList = RequestContext.get().getValue("NESTED_TRIGGERS", NestedTriggerContext.class);
-		if (nestedTriggerList == null) {
-			nestedTriggerList = new NestedTriggerContext();
-			nestedTriggerList.add(triggerName);
-			RequestContext.get().setValue("NESTED_TRIGGERS", nestedTriggerList);
-		} else {
-			nestedTriggerList.add(triggerName);
-		}
-		Log.exit(methodName);
+		return NestedTriggerContext.get();
 	}
 }
\ No newline at end of file
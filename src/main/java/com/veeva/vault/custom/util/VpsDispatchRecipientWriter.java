@@ -0,0 +1,202 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsDispatchRecipientWriter
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Streams the dispatch x user cross product into
+ *              dispatch_recipient__c records. Pairs are emitted and
+ *              saved in fixed size chunks and pairs that already exist
+ *              are skipped (one query per chunk). Save errors roll back
+ *              the transaction, or are collected when the writer runs in
+ *              a job task (rollbackOnError false).
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.sdk.api.core.RollbackException;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.data.Record;
+import com.veeva.vault.sdk.api.data.RecordService;
+import com.veeva.vault.sdk.api.query.QueryResponse;
+
+import java.util.List;
+import java.util.Set;
+
+@UserDefinedClassInfo
+public class VpsDispatchRecipientWriter {
+
+	private static final int CHUNK_SIZE = 500;
+	private static final String DISPATCH_RECIPIENT_OBJECT = "dispatch_recipient__c";
+	private static final String DISPATCH_RECIPIENT_LABEL = "Dispatch Recipients";
+	private static final String FIELD_APPLICATION = "application__c";
+	private static final String FIELD_SUBMISSION = "submission__c";
+	private static final String FIELD_DISPATCH = "dispatch__c";
+	private static final String FIELD_USER = "user__c";
+	private static final String VQL_EXISTING_RECIPIENTS = "SELECT dispatch__c, user__c FROM dispatch_recipient__c "
+			+ "WHERE dispatch__c CONTAINS ({dispatch_ids}) AND user__c CONTAINS ({user_ids})";
+
+	private String applicationId;
+	private String submissionId;
+	private List<String> pendingDispatchIds = VaultCollections.newList();
+	private List<String> pendingUserIds = VaultCollections.newList();
+	private boolean rollbackOnError;
+	private int recordsCreated = 0;
+	private int recordsFailed = 0;
+	private String firstError;
+
+	public VpsDispatchRecipientWriter(String applicationId, String submissionId) {
+		this(applicationId, submissionId, true);
+	}
+
+	/**
+	 * @param applicationId the application of the dispatches
+	 * @param submissionId the submission of the dispatches
+	 * @param rollbackOnError true to roll back on the first save error, false
+	 *            to collect the errors (see getFirstError)
+	 */
+	public VpsDispatchRecipientWriter(String applicationId, String submissionId, boolean rollbackOnError) {
+		this.applicationId = applicationId;
+		this.submissionId = submissionId;
+		this.rollbackOnError = rollbackOnError;
+	}
+
+	/**
+	 * Emits a dispatch recipient for every dispatch/user pair. Records are
+	 * flushed every CHUNK_SIZE pairs, so no more than one chunk is held in memory.
+	 *
+	 * @param dispatchIds the dispatch ids
+	 * @param userIds the users added to the dispatch role
+	 * @return the number of records saved successfully
+	 */
+	public int write(List<String> dispatchIds, Set<String> userIds) {
+		for (String dispatchId : dispatchIds) {
+			for (String userId : userIds) {
+				pendingDispatchIds.add(dispatchId);
+				pendingUserIds.add(userId);
+				if (pendingDispatchIds.size() == CHUNK_SIZE) {
+					flush();
+				}
+			}
+		}
+		flush();
+		return recordsCreated;
+	}
+
+	/**
+	 * @return the number of records saved successfully so far
+	 */
+	public int getRecordsCreated() {
+		return recordsCreated;
+	}
+
+	/**
+	 * @return the number of records that failed to save
+	 */
+	public int getRecordsFailed() {
+		return recordsFailed;
+	}
+
+	/**
+	 * @return the first save error, null when all records were saved
+	 */
+	public String getFirstError() {
+		return firstError;
+	}
+
+	/**
+	 * Saves the pending chunk, skipping the pairs that already exist
+	 */
+	@SuppressWarnings("unchecked")
+	private void flush() {
+		if (pendingDispatchIds.isEmpty()) {
+			return;
+		}
+
+		RecordService recordService = ServiceLocator.locate(RecordService.class);
+		Set<String> existingPairs = retrieveExistingPairs();
+		List<Record> recordList = VaultCollections.newList();
+
+		for (int i = 0; i < pendingDispatchIds.size(); i++) {
+			String dispatchId = pendingDispatchIds.get(i);
+			String userId = pendingUserIds.get(i);
+			// add() returns false for pairs that exist or were already emitted in this chunk
+			if (existingPairs.add(pairKey(dispatchId, userId))) {
+				Record record = recordService.newRecord(DISPATCH_RECIPIENT_OBJECT);
+				record.setValue(FIELD_APPLICATION, applicationId);
+				record.setValue(FIELD_SUBMISSION, submissionId);
+				record.setValue(FIELD_DISPATCH, dispatchId);
+				record.setValue(FIELD_USER, userId);
+				recordList.add(record);
+			}
+		}
+
+		if (recordList.size() > 0) {
+			saveRecords(recordList);
+		}
+
+		pendingDispatchIds.clear();
+		pendingUserIds.clear();
+	}
+
+	/**
+	 * Saves a chunk, counting the records saved and the records that failed
+	 *
+	 * @param recordList records of the chunk
+	 */
+	private void saveRecords(List<Record> recordList) {
+		RecordService recordService = ServiceLocator.locate(RecordService.class);
+		recordService.batchSaveRecords(recordList)
+			.onSuccesses(batchOperationSuccess -> recordsCreated += batchOperationSuccess.size())
+			.onErrors(batchOperationErrors -> {
+				batchOperationErrors.forEach(error -> {
+					String message = DISPATCH_RECIPIENT_LABEL + ": unable to create record because of the following error: "
+							+ error.getError().getMessage();
+					Log.debug(message);
+					if (rollbackOnError) {
+						throw new RollbackException("OPERATION_NOT_ALLOWED", message);
+					}
+					recordsFailed++;
+					if (firstError == null) {
+						firstError = message;
+					}
+				});
+			}).execute();
+	}
+
+	/**
+	 * Queries the dispatch recipients that already exist for the pending chunk
+	 *
+	 * @return set of dispatch/user pair keys
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<String> retrieveExistingPairs() {
+		Set<String> dispatchIds = VaultCollections.newSet();
+		Set<String> userIds = VaultCollections.newSet();
+		dispatchIds.addAll(pendingDispatchIds);
+		userIds.addAll(pendingUserIds);
+
+		Set<String> existingPairs = VaultCollections.newSet();
+		String query = VQL_EXISTING_RECIPIENTS
+				.replace("{dispatch_ids}", VpsUtilHelper.setToString(dispatchIds, ",", true))
+				.replace("{user_ids}", VpsUtilHelper.setToString(userIds, ",", true));
+		QueryResponse queryResponse = QueryServiceUtil.query(query);
+		queryResponse.streamResults().forEach(queryResult -> {
+			existingPairs.add(pairKey(queryResult.getValue(FIELD_DISPATCH, ValueType.STRING),
+					queryResult.getValue(FIELD_USER, ValueType.STRING)));
+		});
+		return existingPairs;
+	}
+
+	private static String pairKey(String dispatchId, String userId) {
+		return dispatchId + ":" + userId;
+	}
+}
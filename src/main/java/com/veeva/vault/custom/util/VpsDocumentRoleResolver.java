@@ -0,0 +1,92 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsDocumentRoleResolver
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Resolves the users and groups of a document role for
+ *              many documents with one chunked doc_role__sys query,
+ *              instead of one roles GET per document. Groups can be
+ *              expanded to their users through GroupMembershipContext.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.custom.model.GroupMembershipContext;
+import com.veeva.vault.custom.model.RoleMembership;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+@UserDefinedClassInfo
+public class VpsDocumentRoleResolver {
+
+	private static final String VQL_DOCUMENT_ROLES = "SELECT document_id, user__sys, group__sys FROM doc_role__sys "
+			+ "WHERE role_name__sys = '{role_name}' AND document_id CONTAINS (" + VpsVQLHelper.VALUES_TOKEN + ")";
+
+	private boolean expandGroups = false;
+
+	/**
+	 * @param expandGroups adds the users of the assigned groups to the user ids of each document
+	 * @return this resolver, for chaining
+	 */
+	public VpsDocumentRoleResolver withGroupExpansion(boolean expandGroups) {
+		this.expandGroups = expandGroups;
+		return this;
+	}
+
+	/**
+	 * @param docIds document ids
+	 * @param roleName document role, e.g. reviewer__v
+	 * @return role members by document id; every document id is in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, RoleMembership> resolve(Collection<String> docIds, String roleName) {
+		Map<String, RoleMembership> membershipByDocId = VaultCollections.newMap();
+		for (String docId : docIds) {
+			membershipByDocId.put(docId, new RoleMembership());
+		}
+
+		String baseQuery = VQL_DOCUMENT_ROLES.replace("{role_name}", VpsVQLHelper.escape(roleName));
+		for (String query : VpsVQLHelper.buildChunkedVQL(baseQuery, docIds, false)) {
+			QueryServiceUtil.query(query).streamResults().forEach(queryResult -> {
+				BigDecimal docId = queryResult.getValue("document_id", ValueType.NUMBER);
+				RoleMembership membership = membershipByDocId.get(docId.toString());
+				if (membership != null) {
+					membership.addUser(queryResult.getValue("user__sys", ValueType.STRING));
+					membership.addGroup(queryResult.getValue("group__sys", ValueType.STRING));
+				}
+			});
+		}
+
+		if (expandGroups) {
+			// one query for the groups of all documents; the per document lookups below hit the cache
+			Set<String> groupIds = VaultCollections.newSet();
+			for (RoleMembership membership : membershipByDocId.values()) {
+				groupIds.addAll(membership.getGroupIds());
+			}
+			GroupMembershipContext groupMembership = GroupMembershipContext.get();
+			groupMembership.getUserIds(groupIds);
+			for (RoleMembership membership : membershipByDocId.values()) {
+				if (!membership.getGroupIds().isEmpty()) {
+					for (String userId : groupMembership.getUserIds(membership.getGroupIds())) {
+						membership.addUser(userId);
+					}
+				}
+			}
+		}
+
+		Log.debug("VpsDocumentRoleResolver resolved role {} on {} documents", roleName, docIds.size());
+		return membershipByDocId;
+	}
+}
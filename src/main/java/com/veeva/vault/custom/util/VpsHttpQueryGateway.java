@@ -0,0 +1,151 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsHttpQueryGateway
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Query transport over the query API (HTTP self callout).
+ *              Follows next_page until all pages are read and throws
+ *              on HTTP or API errors.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.custom.model.APIConfigContext;
+import com.veeva.vault.custom.model.QueryGatewayMetrics;
+import com.veeva.vault.custom.util.api.VpsAPIError;
+import com.veeva.vault.custom.util.api.VpsAPIResponse;
+import com.veeva.vault.sdk.api.core.RollbackException;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.StringUtils;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.http.HttpMethod;
+import com.veeva.vault.sdk.api.http.HttpRequest;
+import com.veeva.vault.sdk.api.http.HttpResponseBodyValueType;
+import com.veeva.vault.sdk.api.http.HttpService;
+import com.veeva.vault.sdk.api.json.JsonObject;
+import com.veeva.vault.sdk.api.json.JsonValueType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@UserDefinedClassInfo
+public class VpsHttpQueryGateway implements VpsQueryGateway {
+
+	public static final String TRANSPORT = "HTTP";
+
+	private String connection;
+	private String apiVersion;
+
+	/**
+	 * Gateway on the connection and API version configured for the request
+	 */
+	public VpsHttpQueryGateway() {
+		this(APIConfigContext.get().getConnection(), APIConfigContext.get().getQueryApiVersion());
+	}
+
+	public VpsHttpQueryGateway(String connection, String apiVersion) {
+		this.connection = connection;
+		this.apiVersion = apiVersion;
+	}
+
+	@Override
+	public int query(String vql, VpsRowShape rowShape, Consumer<VpsRow> rowConsumer) {
+		LocalDateTime startTime = LocalDateTime.now();
+		Log.debug("Executing VQL [{}]: {}", TRANSPORT, vql);
+		HttpService httpService = ServiceLocator.locate(HttpService.class);
+		HttpRequest request = httpService.newHttpRequest(connection)
+				.setMethod(HttpMethod.POST)
+				.setBodyParam("q", vql)
+				.appendPath("/api/" + apiVersion + "/query");
+
+		int rowCount = 0;
+		while (request != null) {
+			VpsAPIResponse apiResponse = send(httpService, request);
+			rowCount += rowShape.stream(apiResponse.getArray("data"), rowConsumer);
+			request = newNextPageRequest(httpService, apiResponse);
+		}
+
+		QueryGatewayMetrics.get().record(TRANSPORT, startTime, rowCount);
+		return rowCount;
+	}
+
+	@Override
+	public String getTransport() {
+		return TRANSPORT;
+	}
+
+	/**
+	 * Sends the request and returns the successful response
+	 *
+	 * @throws RollbackException on an HTTP error or a FAILURE response
+	 */
+	@SuppressWarnings("unchecked")
+	private VpsAPIResponse send(HttpService httpService, HttpRequest request) {
+		List<VpsAPIResponse> responses = VaultCollections.newList();
+		List<String> errors = VaultCollections.newList();
+
+		httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+				.onSuccess(httpResponse -> {
+					VpsAPIResponse apiResponse = new VpsAPIResponse(httpResponse.getResponseBody());
+					if (apiResponse.isSuccess()) {
+						responses.add(apiResponse);
+					} else {
+						for (VpsAPIError error : apiResponse.decodeErrors()) {
+							errors.add(error.toString());
+						}
+						if (errors.isEmpty()) {
+							errors.add(String.valueOf(apiResponse.getResponseMessage()));
+						}
+					}
+				})
+				.onError(httpOperationError -> {
+					if (httpOperationError.getHttpResponse() != null) {
+						errors.add("HTTP Status Code: " + httpOperationError.getHttpResponse().getHttpStatusCode());
+					} else {
+						errors.add(httpOperationError.getMessage());
+					}
+				})
+				.execute();
+
+		if (!errors.isEmpty() || responses.isEmpty()) {
+			String message = errors.isEmpty() ? "No response" : String.join("; ", errors);
+			Log.error("VpsHttpQueryGateway query failed: {}", message);
+			throw new RollbackException("OPERATION_NOT_ALLOWED", "Query failed: " + message);
+		}
+		return responses.get(0);
+	}
+
+	/**
+	 * @return a request for the next page of results, or null on the last page
+	 */
+	private HttpRequest newNextPageRequest(HttpService httpService, VpsAPIResponse apiResponse) {
+		JsonObject responseDetails = apiResponse.getResponseDetails();
+		if (responseDetails == null || !responseDetails.contains("next_page") || responseDetails.isNullValue("next_page")) {
+			return null;
+		}
+
+		// next_page is a path with the page parameters, e.g. /api/v21.2/query/{id}?pagesize=1000&pageoffset=1000
+		String nextPage = responseDetails.getValue("next_page", JsonValueType.STRING);
+		int queryStart = nextPage.indexOf('?');
+		HttpRequest request = httpService.newHttpRequest(connection)
+				.setMethod(HttpMethod.GET)
+				.appendPath(queryStart < 0 ? nextPage : nextPage.substring(0, queryStart));
+		if (queryStart >= 0) {
+			for (String param : StringUtils.split(nextPage.substring(queryStart + 1), "&")) {
+				int equals = param.indexOf('=');
+				if (equals > 0) {
+					request.setQuerystringParam(param.substring(0, equals), param.substring(equals + 1));
+				}
+			}
+		}
+		return request;
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsJobRecordWriter
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Saves or deletes the records of an SDK job task and
+ *              tracks the outcome of every record. RACE_CONDITION failures
+ *              are retried immediately, up to MAX_ATTEMPTS; the records
+ *              that still fail are written to the task output as a
+ *              failure manifest (ids and reasons). The job completion
+ *              logs the manifest and can start a follow-up run with the
+ *              failed ids of the task outputs as its retry_ids.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.custom.util.api.VpsAPIError;
+import com.veeva.vault.sdk.api.core.BatchOperationError;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.data.Record;
+import com.veeva.vault.sdk.api.data.RecordService;
+import com.veeva.vault.sdk.api.job.JobCompletionContext;
+import com.veeva.vault.sdk.api.job.JobItem;
+import com.veeva.vault.sdk.api.job.JobLogger;
+import com.veeva.vault.sdk.api.job.JobParameters;
+import com.veeva.vault.sdk.api.job.JobService;
+import com.veeva.vault.sdk.api.job.JobTask;
+import com.veeva.vault.sdk.api.job.JobValueType;
+import com.veeva.vault.sdk.api.job.TaskOutput;
+import com.veeva.vault.sdk.api.job.TaskState;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@UserDefinedClassInfo
+public class VpsJobRecordWriter {
+
+	public static final int MAX_ATTEMPTS = 3;
+	public static final String OUTPUT_FIRST_ERROR = "firstError";
+	public static final String OUTPUT_FAILED_IDS = "failedIds";
+	public static final String OUTPUT_FAILURES = "failures";
+	public static final String OUTPUT_RETRY_RUN = "retryRun";
+	// ids per follow-up run, keeps the retry_ids parameter compact
+	public static final int MAX_RETRY_IDS = 500;
+	// task output values are kept compact, the manifest lists at most this many reasons
+	private static final int MAX_MANIFEST_REASONS = 50;
+	// failed ids written to the job log; all of them stay in the task outputs
+	private static final int MAX_LOGGED_IDS = 100;
+
+	private JobLogger jobLogger;
+	private RecordService recordService = ServiceLocator.locate(RecordService.class);
+	private int succeeded = 0;
+	private int retried = 0;
+	// record id (or "new record n" for a record without id) -> "category: message"
+	@SuppressWarnings("unchecked")
+	private Map<String, String> failures = VaultCollections.newMap();
+	// ids of the failed records that have one, a new record cannot be retried by id
+	@SuppressWarnings("unchecked")
+	private List<String> failedIds = VaultCollections.newList();
+
+	public VpsJobRecordWriter(JobLogger jobLogger) {
+		super();
+
+		this.jobLogger = jobLogger;
+	}
+
+	public void save(List<Record> records) {
+		write(records, false);
+	}
+
+	public void delete(List<Record> records) {
+		write(records, true);
+	}
+
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	public int getRetried() {
+		return retried;
+	}
+
+	/**
+	 * @return reasons of the records that failed, by record id
+	 */
+	public Map<String, String> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Writes the outcome to the task output. A task with failures is set to
+	 * ERRORS_ENCOUNTERED with the first error, the failed ids and their reasons,
+	 * and the item values a follow-up run needs (see startRetryRuns).
+	 *
+	 * @param task current task
+	 * @param itemValueNames item values copied to the output, named like the job parameters they come from
+	 */
+	public void writeOutput(JobTask task, String... itemValueNames) {
+		jobLogger.log("Records succeeded: " + succeeded + ", failed: " + failures.size() + ", retried: " + retried);
+		if (failures.isEmpty()) {
+			return;
+		}
+
+		StringBuilder reasons = new StringBuilder();
+		int reasonCount = 0;
+		for (String id : failures.keySet()) {
+			if (reasonCount++ == MAX_MANIFEST_REASONS) {
+				reasons.append("; ...");
+				break;
+			}
+			if (reasons.length() > 0) {
+				reasons.append("; ");
+			}
+			reasons.append(id).append(" ").append(failures.get(id));
+		}
+
+		TaskOutput taskOutput = task.getTaskOutput();
+		taskOutput.setState(TaskState.ERRORS_ENCOUNTERED);
+		taskOutput.setValue(OUTPUT_FIRST_ERROR, failures.values().iterator().next());
+		taskOutput.setValue(OUTPUT_FAILED_IDS, String.join(",", failedIds));
+		taskOutput.setValue(OUTPUT_FAILURES, reasons.toString());
+
+		List<JobItem> items = task.getItems();
+		if (!items.isEmpty()) {
+			for (String name : itemValueNames) {
+				taskOutput.setValue(name, items.get(0).getValue(name, JobValueType.STRING));
+			}
+			if (VpsPagedJobInput.isRetryRun(items.get(0))) {
+				taskOutput.setValue(OUTPUT_RETRY_RUN, "true");
+			}
+		}
+	}
+
+	/**
+	 * Logs the failure manifest of every task and returns the failed ids. The log
+	 * lists at most MAX_LOGGED_IDS ids; all of them stay in the task outputs.
+	 *
+	 * @param context completion context of the job
+	 * @return failed record ids of all tasks
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<String> logFailureManifest(JobCompletionContext context) {
+		JobLogger logger = context.getJobLogger();
+		List<String> failedIds = VaultCollections.newList();
+
+		for (JobTask task : context.getTasks()) {
+			TaskOutput taskOutput = task.getTaskOutput();
+			if (TaskState.ERRORS_ENCOUNTERED.equals(taskOutput.getState())) {
+				logger.log(task.getTaskId() + " failed with error message " + taskOutput.getValue(OUTPUT_FIRST_ERROR, JobValueType.STRING));
+
+				String failures = taskOutput.getValue(OUTPUT_FAILURES, JobValueType.STRING);
+				if (failures != null) {
+					logger.log(task.getTaskId() + " failures: " + failures);
+				}
+				failedIds.addAll(VpsPagedJobInput.splitIds(taskOutput.getValue(OUTPUT_FAILED_IDS, JobValueType.STRING)));
+			}
+		}
+
+		if (failedIds.size() > MAX_LOGGED_IDS) {
+			logger.log("Failed records: " + failedIds.size() + ", first " + MAX_LOGGED_IDS + ": "
+					+ String.join(",", failedIds.subList(0, MAX_LOGGED_IDS)) + " (all failed ids are in the task outputs)");
+		}
+		else if (!failedIds.isEmpty()) {
+			logger.log("Failed records: " + failedIds.size() + ": " + String.join(",", failedIds));
+		}
+		return failedIds;
+	}
+
+	/**
+	 * Starts follow-up runs of the job for the failed ids in the task outputs, up to
+	 * MAX_RETRY_IDS ids per run in its retry_ids parameter. The item values written by
+	 * writeOutput are passed as parameters of the same name; tasks with different values
+	 * get separate runs. Tasks of a follow-up run do not start another one.
+	 *
+	 * @param context completion context of the job
+	 * @param jobName job to run
+	 * @param retryIdsParameter name of the retry ids parameter of the job
+	 * @param parameterNames item values written by writeOutput
+	 * @return number of runs started
+	 */
+	@SuppressWarnings("unchecked")
+	public static int startRetryRuns(JobCompletionContext context, String jobName, String retryIdsParameter, String... parameterNames) {
+		// parameter values joined -> failed ids, and -> the parameter values
+		Map<String, List<String>> idsByValues = VaultCollections.newMap();
+		Map<String, List<String>> parameterValues = VaultCollections.newMap();
+
+		for (JobTask task : context.getTasks()) {
+			TaskOutput taskOutput = task.getTaskOutput();
+			if (!TaskState.ERRORS_ENCOUNTERED.equals(taskOutput.getState())
+					|| "true".equals(taskOutput.getValue(OUTPUT_RETRY_RUN, JobValueType.STRING))) {
+				continue;
+			}
+			List<String> taskFailedIds = VpsPagedJobInput.splitIds(taskOutput.getValue(OUTPUT_FAILED_IDS, JobValueType.STRING));
+			if (taskFailedIds.isEmpty()) {
+				continue;
+			}
+
+			List<String> values = VaultCollections.newList();
+			for (String name : parameterNames) {
+				values.add(taskOutput.getValue(name, JobValueType.STRING));
+			}
+			String key = values.toString();
+			if (!idsByValues.containsKey(key)) {
+				idsByValues.put(key, VaultCollections.newList());
+				parameterValues.put(key, values);
+			}
+			idsByValues.get(key).addAll(taskFailedIds);
+		}
+
+		JobService jobService = ServiceLocator.locate(JobService.class);
+		int runs = 0;
+		for (String key : idsByValues.keySet()) {
+			List<String> ids = idsByValues.get(key);
+			for (int start = 0; start < ids.size(); start += MAX_RETRY_IDS) {
+				JobParameters jobParameters = jobService.newJobParameters(jobName);
+				jobParameters.setValue(retryIdsParameter, String.join(",", ids.subList(start, Math.min(start + MAX_RETRY_IDS, ids.size()))));
+				for (int i = 0; i < parameterNames.length; i++) {
+					String value = parameterValues.get(key).get(i);
+					if (value != null) {
+						jobParameters.setValue(parameterNames[i], value);
+					}
+				}
+				jobService.run(jobParameters);
+				runs++;
+			}
+		}
+		if (runs > 0) {
+			context.getJobLogger().log("Started " + runs + " follow-up runs of " + jobName + " for the failed records");
+		}
+		return runs;
+	}
+
+	/**
+	 * Writes the records and retries the RACE_CONDITION failures immediately,
+	 * each attempt with only the records that failed, up to MAX_ATTEMPTS.
+	 */
+	@SuppressWarnings("unchecked")
+	private void write(List<Record> records, boolean isDelete) {
+		List<Record> pending = records;
+
+		for (int attempt = 1; !pending.isEmpty(); attempt++) {
+			List<Record> batch = pending;
+			List<Record> retry = VaultCollections.newList();
+			int[] failedCount = {0};
+			boolean lastAttempt = attempt == MAX_ATTEMPTS;
+
+			Consumer<List<BatchOperationError>> onErrors = batchOperationErrors -> {
+				batchOperationErrors.forEach(error -> {
+					Record record = batch.get(error.getInputPosition());
+					VpsAPIError apiError = new VpsAPIError(error.getError().getType(), error.getError().getMessage());
+					failedCount[0]++;
+
+					if (!lastAttempt && VpsAPIError.CATEGORY_RACE_CONDITION.equals(apiError.getCategory())) {
+						retry.add(record);
+					}
+					else {
+						String id = record.getValue("id", ValueType.STRING);
+						if (id == null) {
+							id = "new record " + (failures.size() + 1);
+						}
+						else {
+							failedIds.add(id);
+						}
+						failures.put(id, apiError.getCategory() + ": " + apiError.getMessage());
+					}
+				});
+			};
+			if (isDelete) {
+				recordService.batchDeleteRecords(batch).onErrors(onErrors).execute();
+			}
+			else {
+				recordService.batchSaveRecords(batch).onErrors(onErrors).execute();
+			}
+
+			succeeded += batch.size() - failedCount[0];
+			if (!retry.isEmpty()) {
+				retried += retry.size();
+				jobLogger.log("Retrying " + retry.size() + " records after attempt " + attempt + " (" + VpsAPIError.CATEGORY_RACE_CONDITION + ")");
+			}
+			pending = retry;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsLocalQueryGateway
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: In process query transport (QueryService)
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.custom.model.QueryGatewayMetrics;
+import com.veeva.vault.sdk.api.core.RollbackException;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultRuntimeException;
+import com.veeva.vault.sdk.api.query.QueryService;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+@UserDefinedClassInfo
+public class VpsLocalQueryGateway implements VpsQueryGateway {
+
+	public static final String TRANSPORT = "QueryService";
+
+	@Override
+	public int query(String vql, VpsRowShape rowShape, Consumer<VpsRow> rowConsumer) {
+		LocalDateTime startTime = LocalDateTime.now();
+		Log.debug("Executing VQL [{}]: {}", TRANSPORT, vql);
+		int rowCount;
+		try {
+			QueryService queryService = ServiceLocator.locate(QueryService.class);
+			rowCount = rowShape.stream(queryService.query(vql), rowConsumer);
+		}
+		catch (VaultRuntimeException e) {
+			throw new RollbackException("OPERATION_NOT_ALLOWED", "Query failed: " + e.getMessage());
+		}
+		QueryGatewayMetrics.get().record(TRANSPORT, startTime, rowCount);
+		return rowCount;
+	}
+
+	@Override
+	public String getTransport() {
+		return TRANSPORT;
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsPagedJobInput
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Builds the input of an id driven SDK job by keyset paging
+ *              through its query. Ids are packed into one job item per
+ *              task (taskSize ids per item) as each page is read, so the id
+ *              set is never held a second time and no page is dropped.
+ *              The items are built in init and handed to Vault as a list,
+ *              not streamed; packing the ids keeps that list at one item
+ *              per task.
+ *              Progress is logged per page; a failed page is re-read from
+ *              the last id read. A comma separated id list (the retry_ids
+ *              of a follow-up run) can be used instead of the query. The
+ *              task size can be derived from a task count (parallel tasks).
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.sdk.api.core.RollbackException;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.StringUtils;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.core.VaultRuntimeException;
+import com.veeva.vault.sdk.api.job.JobInitContext;
+import com.veeva.vault.sdk.api.job.JobInputSupplier;
+import com.veeva.vault.sdk.api.job.JobItem;
+import com.veeva.vault.sdk.api.job.JobLogger;
+import com.veeva.vault.sdk.api.job.JobValueType;
+import com.veeva.vault.sdk.api.query.QueryCountRequest;
+import com.veeva.vault.sdk.api.query.QueryService;
+
+import java.util.List;
+import java.util.Map;
+
+@UserDefinedClassInfo
+public class VpsPagedJobInput {
+
+	public static final String ITEM_IDS = "ids";
+	// set on the items built from retry ids
+	public static final String ITEM_RETRY_RUN = "retry_run";
+	// one task is one DML batch
+	public static final int MAX_TASK_SIZE = 500;
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+	public static final int MAX_PAGE_ATTEMPTS = 3;
+
+	private String query;
+	private String ids;
+	private int taskSize = MAX_TASK_SIZE;
+	private int taskCount = 0;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	@SuppressWarnings("unchecked")
+	private Map<String, String> itemValues = VaultCollections.newMap();
+
+	/**
+	 * @param query id query without ORDER BY or paging clauses
+	 */
+	public VpsPagedJobInput(String query) {
+		super();
+
+		this.query = query;
+	}
+
+	/**
+	 * @param taskSize ids per job item (and task), 1 to MAX_TASK_SIZE
+	 * @return this input, for chaining
+	 */
+	public VpsPagedJobInput withTaskSize(int taskSize) {
+		this.taskSize = Math.max(1, Math.min(MAX_TASK_SIZE, taskSize));
+		return this;
+	}
+
+	/**
+	 * Sets the task size from a job parameter, keeping the default when it is not a number
+	 *
+	 * @param taskSize task size job parameter value (optional)
+	 * @return this input, for chaining
+	 */
+	public VpsPagedJobInput withTaskSize(String taskSize) {
+		if (taskSize != null && taskSize.trim().matches("\\d+")) {
+			withTaskSize(Integer.parseInt(taskSize.trim()));
+		}
+		return this;
+	}
+
+	/**
+	 * Spreads the ids over a number of tasks (run in parallel by Vault) instead of a
+	 * fixed task size. The query is counted first; tasks still hold at most MAX_TASK_SIZE ids.
+	 *
+	 * @param taskCount task count job parameter value (optional), ignored when it is not a number
+	 * @return this input, for chaining
+	 */
+	public VpsPagedJobInput withTaskCount(String taskCount) {
+		if (taskCount != null && taskCount.trim().matches("\\d+")) {
+			this.taskCount = Integer.parseInt(taskCount.trim());
+		}
+		return this;
+	}
+
+	/**
+	 * Uses the given ids instead of the query, e.g. the failed ids of an earlier run
+	 *
+	 * @param ids comma separated ids, ignored when empty
+	 * @return this input, for chaining
+	 */
+	public VpsPagedJobInput withIds(String ids) {
+		this.ids = (ids == null || ids.trim().isEmpty()) ? null : ids.trim();
+		return this;
+	}
+
+	public VpsPagedJobInput withPageSize(int pageSize) {
+		this.pageSize = Math.max(1, pageSize);
+		return this;
+	}
+
+	/**
+	 * @param name item value name
+	 * @param value value set on every job item
+	 * @return this input, for chaining
+	 */
+	public VpsPagedJobInput withItemValue(String name, String value) {
+		itemValues.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Pages through the query and builds the job input
+	 *
+	 * @param jobInitContext init context of the job
+	 * @return job input with one item per task
+	 */
+	public JobInputSupplier build(JobInitContext jobInitContext) {
+		return jobInitContext.newJobInput(buildItems(jobInitContext));
+	}
+
+	/**
+	 * Pages through the query and builds the job items, e.g. to combine the items of several queries
+	 *
+	 * @param jobInitContext init context of the job
+	 * @return one job item per task
+	 */
+	@SuppressWarnings("unchecked")
+	public List<JobItem> buildItems(JobInitContext jobInitContext) {
+		if (ids != null) {
+			return buildFromIds(jobInitContext);
+		}
+
+		JobLogger jobLogger = jobInitContext.getJobLogger();
+		if (taskCount > 0) {
+			long count = countQuery(jobInitContext);
+			withTaskSize((int) Math.min(MAX_TASK_SIZE, (count + taskCount - 1) / taskCount));
+			jobLogger.log("Query count: " + count + ", task size " + taskSize + " for " + taskCount + " tasks");
+		}
+		List<JobItem> jobItems = VaultCollections.newList();
+		StringBuilder taskIds = new StringBuilder();
+		int[] taskIdCount = {0};
+		String[] lastId = {null};
+
+		VpsQueryGateway queryGateway = new VpsLocalQueryGateway();
+		VpsRowShape idShape = new VpsRowShape().field("id", VpsRowShape.TYPE_STRING, null);
+		int page = 0;
+		int total = 0;
+		int attempts = 0;
+
+		while (true) {
+			String pageStartId = lastId[0];
+			String pageQuery = VpsVQLHelper.buildKeysetPageVQL(query, "id", pageStartId, pageSize);
+			int rowCount;
+			try {
+				rowCount = queryGateway.query(pageQuery, idShape, row -> {
+					lastId[0] = row.getString("id");
+					if (taskIdCount[0] > 0) {
+						taskIds.append(",");
+					}
+					taskIds.append(lastId[0]);
+					if (++taskIdCount[0] == taskSize) {
+						jobItems.add(newJobItem(jobInitContext, taskIds.toString()));
+						taskIds.setLength(0);
+						taskIdCount[0] = 0;
+					}
+				});
+			}
+			catch (VaultRuntimeException e) {
+				attempts++;
+				jobLogger.log("Page " + (page + 1) + " failed (attempt " + attempts + "), continuing after id " + lastId[0] + ": " + e.getMessage());
+				if (attempts >= MAX_PAGE_ATTEMPTS) {
+					throw e;
+				}
+				continue;
+			}
+
+			attempts = 0;
+			page++;
+			total += rowCount;
+			jobLogger.log("Page " + page + ": " + rowCount + " ids, total " + total + ", last id " + lastId[0]);
+			if (rowCount < pageSize) {
+				break;
+			}
+			if (pageStartId != null && lastId[0].compareTo(pageStartId) <= 0) {
+				throw new RollbackException("OPERATION_NOT_ALLOWED", "Paging did not advance after id " + pageStartId
+						+ "; the query must return ids in ascending order and not page itself.");
+			}
+		}
+
+		if (taskIdCount[0] > 0) {
+			jobItems.add(newJobItem(jobInitContext, taskIds.toString()));
+		}
+		jobLogger.log("Total ids: " + total + ", tasks: " + jobItems.size() + " (task size " + taskSize + ")");
+
+		return jobItems;
+	}
+
+	/**
+	 * @param jobItem item built by this input
+	 * @return the ids of the item
+	 */
+	public static List<String> getIds(JobItem jobItem) {
+		return splitIds(jobItem.getValue(ITEM_IDS, JobValueType.STRING));
+	}
+
+	/**
+	 * @param jobItem item built by this input
+	 * @return true if the item was built from retry ids
+	 */
+	public static boolean isRetryRun(JobItem jobItem) {
+		return "true".equals(jobItem.getValue(ITEM_RETRY_RUN, JobValueType.STRING));
+	}
+
+	/**
+	 * @param value comma separated ids (optional)
+	 * @return the ids, empty when the value is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<String> splitIds(String value) {
+		List<String> result = VaultCollections.newList();
+
+		if (value != null && !value.isEmpty()) {
+			for (String id : StringUtils.split(value, ",")) {
+				if (!id.trim().isEmpty()) {
+					result.add(id.trim());
+				}
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<JobItem> buildFromIds(JobInitContext jobInitContext) {
+		List<JobItem> jobItems = VaultCollections.newList();
+		List<String> idList = splitIds(ids);
+
+		for (int start = 0; start < idList.size(); start += taskSize) {
+			JobItem jobItem = newJobItem(jobInitContext, String.join(",", idList.subList(start, Math.min(start + taskSize, idList.size()))));
+			jobItem.setValue(ITEM_RETRY_RUN, "true");
+			jobItems.add(jobItem);
+		}
+		jobInitContext.getJobLogger().log("Retry ids: " + idList.size() + ", tasks: " + jobItems.size() + " (task size " + taskSize + ")");
+
+		return jobItems;
+	}
+
+	private long countQuery(JobInitContext jobInitContext) {
+		QueryService queryService = ServiceLocator.locate(QueryService.class);
+		QueryCountRequest queryCountRequest = queryService
+				.newQueryCountRequestBuilder()
+				.withQueryString(query)
+				.build();
+
+		final long[] queryResultCount = {0};
+
+		queryService.count(queryCountRequest)
+				.onSuccess(queryCountResponse -> {
+					queryResultCount[0] = queryCountResponse.getTotalCount();
+				})
+				.onError(queryOperationError -> {
+					jobInitContext.getJobLogger().log("Unable to count the query, using task size " + taskSize + ": " + queryOperationError.getMessage());
+				})
+				.execute();
+
+		return queryResultCount[0];
+	}
+
+	private JobItem newJobItem(JobInitContext jobInitContext, String ids) {
+		JobItem jobItem = jobInitContext.newJobItem();
+		jobItem.setValue(ITEM_IDS, ids);
+		for (String name : itemValues.keySet()) {
+			jobItem.setValue(name, itemValues.get(name));
+		}
+		return jobItem;
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsQueryGateway
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Query transport used by the services and jobs.
+ *              VpsLocalQueryGateway runs VQL in process through
+ *              QueryService and is the default. VpsHttpQueryGateway
+ *              calls the query API over the local callout connection
+ *              and is only for call sites that must read the committed
+ *              state, e.g. the user role templates inside their own
+ *              trigger.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+
+import java.util.function.Consumer;
+
+@UserDefinedClassInfo
+public interface VpsQueryGateway {
+
+	/**
+	 * Runs the query and streams every row, across all result pages, to the consumer.
+	 * Errors are thrown as a RollbackException.
+	 *
+	 * @param vql the query
+	 * @param rowShape the fields to read from each result
+	 * @param rowConsumer receives a reused row holder per result
+	 * @return number of rows read
+	 */
+	int query(String vql, VpsRowShape rowShape, Consumer<VpsRow> rowConsumer);
+
+	/**
+	 * @return name of the transport, used for latency reporting
+	 */
+	String getTransport();
+}
@@ -0,0 +1,62 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsRow
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Reusable holder for one query row of a VpsRowShape
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@UserDefinedClassInfo
+public class VpsRow {
+
+	private VpsRowShape shape;
+	private List<Object> values;
+
+	@SuppressWarnings("unchecked")
+	VpsRow(VpsRowShape shape) {
+		this.shape = shape;
+		this.values = VaultCollections.newList();
+		for (int i = 0; i < shape.size(); i++) {
+			values.add(null);
+		}
+	}
+
+	void set(int index, Object value) {
+		values.set(index, value);
+	}
+
+	public Object getValue(int index) {
+		return values.get(index);
+	}
+
+	public String getString(String name) {
+		return (String) values.get(shape.indexOf(name));
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<String> getList(String name) {
+		return (List<String>) values.get(shape.indexOf(name));
+	}
+
+	public Boolean getBoolean(String name) {
+		return (Boolean) values.get(shape.indexOf(name));
+	}
+
+	public BigDecimal getNumber(String name) {
+		return (BigDecimal) values.get(shape.indexOf(name));
+	}
+}
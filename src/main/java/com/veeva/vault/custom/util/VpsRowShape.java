@@ -0,0 +1,201 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsRowShape
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Declares the fields (name, type, default) of a query row
+ *              once and projects QueryService results or HTTP query
+ *              data into a reusable VpsRow, reading each field once.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.json.JsonArray;
+import com.veeva.vault.sdk.api.json.JsonObject;
+import com.veeva.vault.sdk.api.json.JsonValueType;
+import com.veeva.vault.sdk.api.query.QueryResponse;
+import com.veeva.vault.sdk.api.query.QueryResult;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@UserDefinedClassInfo
+public class VpsRowShape {
+
+	public static final int TYPE_STRING = 0;
+	/** first value of a picklist field, as a String */
+	public static final int TYPE_PICKLIST = 1;
+	/** all values of a picklist field, as a List of String */
+	public static final int TYPE_PICKLIST_VALUES = 2;
+	public static final int TYPE_BOOLEAN = 3;
+	public static final int TYPE_NUMBER = 4;
+
+	@SuppressWarnings("unchecked")
+	private List<String> names = VaultCollections.newList();
+	@SuppressWarnings("unchecked")
+	private List<Integer> types = VaultCollections.newList();
+	@SuppressWarnings("unchecked")
+	private List<Object> defaults = VaultCollections.newList();
+	@SuppressWarnings("unchecked")
+	private Map<String, Integer> indexes = VaultCollections.newMap();
+
+	/**
+	 * Adds a field to the shape
+	 *
+	 * @param name field name as selected in the query
+	 * @param type one of the TYPE_ constants
+	 * @param defaultValue value used when the field is null or missing
+	 * @return this shape, for chaining
+	 */
+	public VpsRowShape field(String name, int type, Object defaultValue) {
+		indexes.put(name, names.size());
+		names.add(name);
+		types.add(type);
+		defaults.add(defaultValue);
+		return this;
+	}
+
+	/**
+	 * @return the field names, comma separated, for the SELECT clause
+	 */
+	public String getFieldList() {
+		return String.join(",", names);
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * @return an empty row of this shape
+	 */
+	public VpsRow newRow() {
+		return new VpsRow(this);
+	}
+
+	/**
+	 * Streams the results of a QueryService query through one reused row.
+	 * The consumer must copy out any values it keeps.
+	 *
+	 * @param queryResponse the query response
+	 * @param rowConsumer receives the row for each result
+	 * @return number of rows read
+	 */
+	public int stream(QueryResponse queryResponse, Consumer<VpsRow> rowConsumer) {
+		VpsRow row = newRow();
+		int count = 0;
+		Iterator<QueryResult> iterator = queryResponse.streamResults().iterator();
+		while (iterator.hasNext()) {
+			read(iterator.next(), row);
+			rowConsumer.accept(row);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Streams the "data" array of an HTTP query response through one reused row.
+	 * The consumer must copy out any values it keeps.
+	 *
+	 * @param data the data array of the query response
+	 * @param rowConsumer receives the row for each result
+	 * @return number of rows read
+	 */
+	public int stream(JsonArray data, Consumer<VpsRow> rowConsumer) {
+		VpsRow row = newRow();
+		int count = 0;
+		if (data != null) {
+			for (int i = 0; i < data.getSize(); i++) {
+				read(data.getValue(i, JsonValueType.OBJECT), row);
+				rowConsumer.accept(row);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Reads each field of a query result once into the row
+	 */
+	@SuppressWarnings("unchecked")
+	public void read(QueryResult queryResult, VpsRow row) {
+		for (int i = 0; i < names.size(); i++) {
+			String name = names.get(i);
+			Object value;
+			switch (types.get(i)) {
+				case TYPE_PICKLIST:
+					List<String> picklistValues = queryResult.getValue(name, ValueType.PICKLIST_VALUES);
+					value = (picklistValues == null || picklistValues.isEmpty()) ? null : picklistValues.get(0);
+					break;
+				case TYPE_PICKLIST_VALUES:
+					value = queryResult.getValue(name, ValueType.PICKLIST_VALUES);
+					break;
+				case TYPE_BOOLEAN:
+					value = queryResult.getValue(name, ValueType.BOOLEAN);
+					break;
+				case TYPE_NUMBER:
+					value = queryResult.getValue(name, ValueType.NUMBER);
+					break;
+				default:
+					value = queryResult.getValue(name, ValueType.STRING);
+			}
+			row.set(i, value == null ? defaults.get(i) : value);
+		}
+	}
+
+	/**
+	 * Reads each field of an HTTP query data item once into the row
+	 */
+	@SuppressWarnings("unchecked")
+	public void read(JsonObject dataItem, VpsRow row) {
+		for (int i = 0; i < names.size(); i++) {
+			String name = names.get(i);
+			Object value = null;
+			if (dataItem.contains(name) && !dataItem.isNullValue(name)) {
+				switch (types.get(i)) {
+					case TYPE_PICKLIST:
+					case TYPE_PICKLIST_VALUES:
+						JsonArray jsonValues = dataItem.getValue(name, JsonValueType.ARRAY);
+						List<String> picklistValues = VaultCollections.newList();
+						for (int j = 0; j < jsonValues.getSize(); j++) {
+							picklistValues.add(jsonValues.getValue(j, JsonValueType.STRING));
+						}
+						if (types.get(i) == TYPE_PICKLIST_VALUES) {
+							value = picklistValues;
+						} else if (!picklistValues.isEmpty()) {
+							value = picklistValues.get(0);
+						}
+						break;
+					case TYPE_BOOLEAN:
+						value = dataItem.getValue(name, JsonValueType.BOOLEAN);
+						break;
+					case TYPE_NUMBER:
+						value = dataItem.getValue(name, JsonValueType.NUMBER);
+						break;
+					default:
+						value = dataItem.getValue(name, JsonValueType.STRING);
+				}
+			}
+			row.set(i, value == null ? defaults.get(i) : value);
+		}
+	}
+
+	int indexOf(String name) {
+		Integer index = indexes.get(name);
+		if (index == null) {
+			throw new IllegalArgumentException("Field not in row shape: " + name);
+		}
+		return index;
+	}
+}
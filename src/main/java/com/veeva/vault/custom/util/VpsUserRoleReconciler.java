@@ -0,0 +1,389 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsUserRoleReconciler
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ * --------------------------------------------------------------------
+ * Description: Diff based reconciliation of the user role setup records
+ *              of a template group. The desired rows (templates x active
+ *              assignments, built like getNewUserRecords) and the existing
+ *              rows are keyed by a 64 bit FNV-1a hash over the user, mapped
+ *              and country fields; only the missing rows are created and
+ *              only the existing rows that matched the previous templates
+ *              and are no longer desired are deleted. Rows of other
+ *              template groups on the same object are never touched.
+ *              Users are processed in chunks so the rows held in memory
+ *              stay below the Vault collection limit.
+ * --------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ * This code is based on pre-existing content developed and
+ * owned by Veeva Systems Inc. and may only be used in connection
+ * with the deliverable with which it was provided to Customer.
+ * --------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util;
+
+import com.veeva.vault.custom.model.TemplateGroup;
+import com.veeva.vault.custom.model.UserRoleTemplateMapping;
+import com.veeva.vault.sdk.api.core.RollbackException;
+import com.veeva.vault.sdk.api.core.ServiceLocator;
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.ValueType;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.data.Record;
+import com.veeva.vault.sdk.api.data.RecordService;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@UserDefinedClassInfo
+public class VpsUserRoleReconciler {
+
+	public static final int BATCH_SIZE = 500;
+	// desired rows held per user chunk, below the 10k Vault collection limit
+	public static final int MAX_CHUNK_ROWS = 5000;
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final char FIELD_SEPARATOR = '\u001f';
+	private static final String VQL_ASSIGNMENTS = "select user__c, country__c, country_api_name__c "
+			+ "from user_role_template_assignment__c where template_group__c = '{template_group}' and status__v = 'active__v'";
+
+	private TemplateGroup templateGroup;
+	private List<Record> desiredTemplates;
+	private List<Record> previousTemplates;
+	private VpsQueryGateway queryGateway;
+	private VpsJobRecordWriter recordWriter;
+	private RecordService recordService = ServiceLocator.locate(RecordService.class);
+	// user role setup field -> template field
+	@SuppressWarnings("unchecked")
+	private Map<String, String> templateFields = VaultCollections.newMap();
+	@SuppressWarnings("unchecked")
+	private Set<String> picklistFields = VaultCollections.newSet();
+	@SuppressWarnings("unchecked")
+	private List<String> keyFields = VaultCollections.newList();
+	// user -> assignments as {country, country api name}
+	@SuppressWarnings("unchecked")
+	private Map<String, List<String[]>> assignmentsByUser = VaultCollections.newMap();
+	private int created = 0;
+	private int deleted = 0;
+
+	/**
+	 * @param templateGroup initialized template group (object name and mappings)
+	 * @param desiredTemplates active templates of the group after the change
+	 * @param previousTemplates active templates of the group before the change
+	 */
+	public VpsUserRoleReconciler(TemplateGroup templateGroup, List<Record> desiredTemplates, List<Record> previousTemplates) {
+		this(templateGroup, desiredTemplates, previousTemplates, new VpsLocalQueryGateway());
+	}
+
+	public VpsUserRoleReconciler(TemplateGroup templateGroup, List<Record> desiredTemplates, List<Record> previousTemplates,
+			VpsQueryGateway queryGateway) {
+		super();
+
+		this.templateGroup = templateGroup;
+		this.desiredTemplates = desiredTemplates;
+		this.previousTemplates = previousTemplates;
+		this.queryGateway = queryGateway;
+
+		keyFields.add(templateGroup.getUserAPIName());
+		for (UserRoleTemplateMapping urtm : templateGroup.getUrtm()) {
+			templateFields.put(urtm.getUser_role_setup_field(), urtm.getTemplate_field__c());
+			if (urtm.is_picklist__c()) {
+				picklistFields.add(urtm.getUser_role_setup_field());
+			}
+			addKeyField(urtm.getUser_role_setup_field());
+		}
+	}
+
+	/**
+	 * Writes the rows through a job record writer, which retries RACE_CONDITION failures
+	 * and records the rows that still fail instead of rolling back on the first error
+	 *
+	 * @param recordWriter writer of the job task
+	 * @return this reconciler, for chaining
+	 */
+	public VpsUserRoleReconciler withRecordWriter(VpsJobRecordWriter recordWriter) {
+		this.recordWriter = recordWriter;
+		return this;
+	}
+
+	/**
+	 * Loads the active assignments of the template group and applies the
+	 * difference between the desired and the existing rows
+	 *
+	 * @return number of rows created and deleted
+	 */
+	public int reconcile() {
+		loadAssignments();
+
+		int templateCount = Math.max(1, Math.max(desiredTemplates.size(), previousTemplates.size()));
+		List<String> users = VaultCollections.newList();
+		int chunkRows = 0;
+
+		for (String userId : assignmentsByUser.keySet()) {
+			int userRows = assignmentsByUser.get(userId).size() * templateCount;
+			if (!users.isEmpty() && chunkRows + userRows > MAX_CHUNK_ROWS) {
+				reconcileUsers(users);
+				users = VaultCollections.newList();
+				chunkRows = 0;
+			}
+			users.add(userId);
+			chunkRows += userRows;
+		}
+		if (!users.isEmpty()) {
+			reconcileUsers(users);
+		}
+
+		Log.info("VpsUserRoleReconciler template group [{}]: {} users, {} created, {} deleted",
+				templateGroup.getTemplateGroupId(), assignmentsByUser.size(), created, deleted);
+		return created + deleted;
+	}
+
+	public int getCreated() {
+		return created;
+	}
+
+	public int getDeleted() {
+		return deleted;
+	}
+
+	private void addKeyField(String fieldName) {
+		if (fieldName != null && !fieldName.isEmpty() && !keyFields.contains(fieldName)) {
+			keyFields.add(fieldName);
+		}
+	}
+
+	private void loadAssignments() {
+		VpsRowShape assignmentShape = new VpsRowShape()
+				.field("user__c", VpsRowShape.TYPE_STRING, null)
+				.field("country__c", VpsRowShape.TYPE_STRING, null)
+				.field("country_api_name__c", VpsRowShape.TYPE_STRING, null);
+		String query = VQL_ASSIGNMENTS.replace("{template_group}", templateGroup.getTemplateGroupId());
+
+		queryGateway.query(query, assignmentShape, row -> {
+			String userId = row.getString("user__c");
+			String country = row.getString("country__c");
+			String countryAPIName = row.getString("country_api_name__c");
+
+			if (country == null || country.isEmpty() || countryAPIName == null || countryAPIName.isEmpty()) {
+				country = null;
+				countryAPIName = null;
+			}
+			addKeyField(countryAPIName);
+
+			List<String[]> assignments = assignmentsByUser.get(userId);
+			if (assignments == null) {
+				assignments = VaultCollections.newList();
+				assignmentsByUser.put(userId, assignments);
+			}
+			assignments.add(new String[] {country, countryAPIName});
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private void reconcileUsers(List<String> users) {
+		Map<String, Record> missingRows = VaultCollections.newMap();
+		Set<String> previousKeys = VaultCollections.newSet();
+
+		for (String userId : users) {
+			for (String[] assignment : assignmentsByUser.get(userId)) {
+				for (Record template : desiredTemplates) {
+					String key = rowKey(userId, template, assignment);
+					if (!missingRows.containsKey(key)) {
+						missingRows.put(key, newRow(userId, template, assignment));
+					}
+				}
+				for (Record template : previousTemplates) {
+					previousKeys.add(rowKey(userId, template, assignment));
+				}
+			}
+		}
+
+		// Stream the existing rows: desired rows that exist are no longer missing,
+		// rows of the previous templates that are not desired (or repeat a desired row) go
+		VpsRowShape rowShape = new VpsRowShape().field("id", VpsRowShape.TYPE_STRING, null);
+		for (String fieldName : keyFields) {
+			rowShape.field(fieldName, picklistFields.contains(fieldName) ? VpsRowShape.TYPE_PICKLIST_VALUES : VpsRowShape.TYPE_STRING, null);
+		}
+		StringBuilder baseQuery = new StringBuilder()
+				.append("select ")
+				.append(rowShape.getFieldList())
+				.append(" from ")
+				.append(templateGroup.getObjectName())
+				.append(" where ")
+				.append(templateGroup.getUserAPIName())
+				.append(" contains (")
+				.append(VpsVQLHelper.VALUES_TOKEN)
+				.append(")");
+
+		List<Record> deleteRows = VaultCollections.newList();
+		for (String query : VpsVQLHelper.buildChunkedVQL(baseQuery.toString(), users, true)) {
+			queryGateway.query(query, rowShape, row -> {
+				String key = rowKey(row);
+				if (missingRows.remove(key) == null && previousKeys.contains(key)) {
+					deleteRows.add(recordService.newRecordWithId(templateGroup.getObjectName(), row.getString("id")));
+				}
+			});
+		}
+
+		deleteRecords(deleteRows);
+		saveRecords(missingRows.values());
+	}
+
+	/**
+	 * Same values as VpsUserRoleTemplateProvisionService.getNewUserRecords:
+	 * user, mapped template fields, then the assignment country
+	 */
+	private Record newRow(String userId, Record template, String[] assignment) {
+		Record row = recordService.newRecord(templateGroup.getObjectName());
+
+		row.setValue(templateGroup.getUserAPIName(), userId);
+		for (String fieldName : templateFields.keySet()) {
+			if (picklistFields.contains(fieldName)) {
+				row.setValue(fieldName, template.getValue(templateFields.get(fieldName), ValueType.PICKLIST_VALUES));
+			}
+			else {
+				row.setValue(fieldName, template.getValue(templateFields.get(fieldName), ValueType.STRING));
+			}
+		}
+		if (assignment[1] != null) {
+			row.setValue(assignment[1], assignment[0]);
+		}
+		return row;
+	}
+
+	private String rowKey(String userId, Record template, String[] assignment) {
+		StringBuilder key = new StringBuilder();
+
+		for (String fieldName : keyFields) {
+			String value;
+			if (fieldName.equals(templateGroup.getUserAPIName())) {
+				value = userId;
+			}
+			else if (fieldName.equals(assignment[1])) {
+				value = assignment[0];
+			}
+			else if (!templateFields.containsKey(fieldName)) {
+				value = null;
+			}
+			else if (picklistFields.contains(fieldName)) {
+				value = joinValues(template.getValue(templateFields.get(fieldName), ValueType.PICKLIST_VALUES));
+			}
+			else {
+				value = template.getValue(templateFields.get(fieldName), ValueType.STRING);
+			}
+			appendKeyValue(key, value);
+		}
+		return hash(key);
+	}
+
+	private String rowKey(VpsRow row) {
+		StringBuilder key = new StringBuilder();
+
+		for (String fieldName : keyFields) {
+			appendKeyValue(key, picklistFields.contains(fieldName) ? joinValues(row.getList(fieldName)) : row.getString(fieldName));
+		}
+		return hash(key);
+	}
+
+	private static void appendKeyValue(StringBuilder key, String value) {
+		if (value != null) {
+			key.append(value);
+		}
+		key.append(FIELD_SEPARATOR);
+	}
+
+	/**
+	 * Picklist values are sorted so the key does not depend on the order Vault returns them in
+	 */
+	@SuppressWarnings("unchecked")
+	private static String joinValues(List<String> values) {
+		if (values == null) {
+			return null;
+		}
+		List<String> sortedValues = VaultCollections.newList();
+		sortedValues.addAll(values);
+		Collections.sort(sortedValues);
+		return String.join(",", sortedValues);
+	}
+
+	/**
+	 * 64 bit FNV-1a; wide enough that key collisions are negligible at
+	 * user role setup volumes while keeping the key sets compact
+	 */
+	private static String hash(CharSequence value) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return Long.toHexString(hash);
+	}
+
+	private void deleteRecords(Collection<Record> records) {
+		writeBatches(records, true);
+	}
+
+	private void saveRecords(Collection<Record> records) {
+		writeBatches(records, false);
+	}
+
+	/**
+	 * Deletes or saves the records in batches of BATCH_SIZE. Without a record
+	 * writer the entire transaction is rolled back when encountering errors.
+	 */
+	@SuppressWarnings("unchecked")
+	private void writeBatches(Collection<Record> records, boolean isDelete) {
+		List<Record> batch = VaultCollections.newList();
+
+		for (Record record : records) {
+			batch.add(record);
+			if (batch.size() == BATCH_SIZE) {
+				writeBatch(batch, isDelete);
+				batch = VaultCollections.newList();
+			}
+		}
+		if (!batch.isEmpty()) {
+			writeBatch(batch, isDelete);
+		}
+	}
+
+	private void writeBatch(List<Record> batch, boolean isDelete) {
+		if (recordWriter != null) {
+			int succeeded = recordWriter.getSucceeded();
+			if (isDelete) {
+				recordWriter.delete(batch);
+				deleted += recordWriter.getSucceeded() - succeeded;
+			}
+			else {
+				recordWriter.save(batch);
+				created += recordWriter.getSucceeded() - succeeded;
+			}
+		}
+		else if (isDelete) {
+			recordService.batchDeleteRecords(batch)
+					.onErrors(batchOperationErrors -> {
+						batchOperationErrors.stream().findFirst().ifPresent(error -> {
+							String errMsg = error.getError().getMessage();
+							throw new RollbackException("OPERATION_NOT_ALLOWED", "Unable to delete record: " + errMsg);
+						});
+					})
+					.execute();
+			deleted += batch.size();
+		}
+		else {
+			recordService.batchSaveRecords(batch)
+					.onErrors(batchOperationErrors -> {
+						batchOperationErrors.stream().findFirst().ifPresent(error -> {
+							String errMsg = error.getError().getMessage();
+							throw new RollbackException("OPERATION_NOT_ALLOWED", "Unable to save record: " + errMsg);
+						});
+					})
+					.execute();
+			created += batch.size();
+		}
+	}
+}
@@ -14,12 +14,12 @@
  */
 package com.veeva.vault.custom.util;
 
+import com.veeva.vault.custom.model.MetadataCache;
 import com.veeva.vault.sdk.api.core.*;
 import com.veeva.vault.sdk.api.data.Record;
-import com.veeva.vault.sdk.api.picklist.Picklist;
-import com.veeva.vault.sdk.api.picklist.PicklistService;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.lang.Math.abs;
@@ -49,8 +49,7 @@ public class VpsUtilHelper {
 	 * @return picklistlabels as Set
 	 */
 	public static Set<String> getPicklistLabels(Record inputRecord, String picklistFieldName) {
-		PicklistService picklistService = ServiceLocator.locate(PicklistService.class);
-		Picklist picklist = picklistService.getPicklist(picklistFieldName);
+		Map<String, String> picklist = MetadataCache.get().getPicklist(picklistFieldName);
 		List<String> picklistValues = inputRecord.getValue(picklistFieldName, ValueType.PICKLIST_VALUES);
 
 		Set<String> picklistLabels = VaultCollections.newSet();
@@ -58,9 +57,10 @@ public class VpsUtilHelper {
 
 			for (String picklistValue : picklistValues) {
 				//Get picklist value label
-				String picklistValueLabel =
-						picklist.getPicklistValue(picklistValue).getLabel();
-				picklistLabels.add(picklistValueLabel);
+				String picklistValueLabel = picklist.get(picklistValue);
+				if (picklistValueLabel != null) {
+					picklistLabels.add(picklistValueLabel);
+				}
 			}
 		}
 		return picklistLabels;
@@ -130,8 +130,7 @@ public class VpsUtilHelper {
 	 * @return string of values
 	 */
 	public static String listToString(List<String> valueList, String delimiter, Boolean addQuotes) {
-		LogService logService = ServiceLocator.locate(LogService.class);
-		logService.info("VpsUtilHelper.listToString; delimiter = {}; addQuotes = {}", delimiter, addQuotes);
+		Log.debug("VpsUtilHelper.listToString; delimiter = {}; addQuotes = {}", delimiter, addQuotes);
 
 		StringBuilder result = new StringBuilder();
 		if (valueList != null) {
@@ -162,8 +161,7 @@ public class VpsUtilHelper {
 	 * @return string of values
 	 */
 	public static String setToString(Set<String> valueSet, String delimiter, Boolean addQuotes) {
-		LogService logService = ServiceLocator.locate(LogService.class);
-		logService.info("VpsUtilHelper.setToString; delimiter = {}; addQuotes = {}", delimiter, addQuotes);
+		Log.debug("VpsUtilHelper.setToString; delimiter = {}; addQuotes = {}", delimiter, addQuotes);
 
 		StringBuilder result = new StringBuilder();
 		if (valueSet != null) {
@@ -16,15 +16,33 @@ package com.veeva.vault.custom.util;
 
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
 import com.veeva.vault.sdk.api.query.QueryResponse;
+import com.veeva.vault.sdk.api.query.QueryResult;
 import com.veeva.vault.sdk.api.query.QueryService;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @UserDefinedClassInfo
 public class VpsVQLHelper extends VpsBaseHelper {
 
+	/**
+	 * Token in a base query that is replaced by a chunk of values, e.g.
+	 * "SELECT id FROM country__v WHERE id CONTAINS ({values})"
+	 */
+	public static final String VALUES_TOKEN = "{values}";
+
+	/**
+	 * Default size budget for a chunked query, kept below the VQL query length limit
+	 */
+	public static final int MAX_QUERY_BYTES = 45000;
+
+	private static final String WHERE = "WHERE";
+
 	private QueryService queryService;
 	private StringBuilder vql;
 
@@ -115,4 +133,208 @@ public class VpsVQLHelper extends VpsBaseHelper {
 		logVQL();
 		return getQueryService().query(vql.toString());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Runs a base query once per chunk of values and passes every result to the consumer,
+	 * so the results of all chunks are merged into one stream.
+	 *
+	 * @param baseQuery query containing VALUES_TOKEN
+	 * @param values values to substitute for the token
+	 * @param addQuotes adds quotes to values (object ids require quotes; doc ids do not)
+	 * @param resultConsumer receives each query result
+	 * @return number of results processed
+	 */
+	public int runChunkedVQL(String baseQuery, Collection<String> values, Boolean addQuotes, Consumer<QueryResult> resultConsumer) {
+		int resultCount = 0;
+		for (String query : buildChunkedVQL(baseQuery, values, addQuotes)) {
+			clearVQL();
+			appendVQL(query);
+			Iterator<QueryResult> iterator = runVQL().streamResults().iterator();
+			while (iterator.hasNext()) {
+				resultConsumer.accept(iterator.next());
+				resultCount++;
+			}
+		}
+		clearVQL();
+		return resultCount;
+	}
+
+	/**
+	 * Splits a value collection into as many queries as needed to keep each query
+	 * within MAX_QUERY_BYTES.  Null and duplicate values are skipped.
+	 *
+	 * @param baseQuery query containing VALUES_TOKEN
+	 * @param values values to substitute for the token
+	 * @param addQuotes adds quotes to values (object ids require quotes; doc ids do not)
+	 * @return the chunked queries; empty when there are no values
+	 */
+	public static List<String> buildChunkedVQL(String baseQuery, Collection<String> values, Boolean addQuotes) {
+		return buildChunkedVQL(baseQuery, values, addQuotes, MAX_QUERY_BYTES);
+	}
+
+	/**
+	 * Splits a value collection into as many queries as needed to keep each query
+	 * within maxQueryBytes.  Null and duplicate values are skipped.
+	 *
+	 * @param baseQuery query containing VALUES_TOKEN
+	 * @param values values to substitute for the token
+	 * @param addQuotes adds quotes to values (object ids require quotes; doc ids do not)
+	 * @param maxQueryBytes size budget of each query (UTF-8 bytes)
+	 * @return the chunked queries; empty when there are no values
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<String> buildChunkedVQL(String baseQuery, Collection<String> values, Boolean addQuotes, int maxQueryBytes) {
+		List<String> queries = VaultCollections.newList();
+		if (values == null || values.isEmpty()) {
+			return queries;
+		}
+
+		int budget = maxQueryBytes - byteLength(baseQuery) + VALUES_TOKEN.length();
+		Set<String> distinctValues = VaultCollections.newSet();
+		StringBuilder chunk = new StringBuilder();
+		int chunkBytes = 0;
+
+		for (String value : values) {
+			if (value == null || !distinctValues.add(value)) {
+				continue;
+			}
+			String item = addQuotes ? "'" + escape(value) + "'" : value;
+			int itemBytes = byteLength(item);
+			if (chunk.length() > 0 && chunkBytes + 1 + itemBytes > budget) {
+				queries.add(baseQuery.replace(VALUES_TOKEN, chunk.toString()));
+				chunk.setLength(0);
+				chunkBytes = 0;
+			}
+			if (chunk.length() > 0) {
+				chunk.append(",");
+				chunkBytes++;
+			}
+			chunk.append(item);
+			chunkBytes += itemBytes;
+		}
+		if (chunk.length() > 0) {
+			queries.add(baseQuery.replace(VALUES_TOKEN, chunk.toString()));
+		}
+		return queries;
+	}
+
+	/**
+	 * Builds one page of a keyset paged query: the rows after lastKey ordered
+	 * by the key.  Unlike SKIP/PAGESIZE paging, a page can be re-read from its
+	 * last key after a failure and rows are not skipped when earlier rows change.
+	 * The WHERE predicate of the base query is wrapped in parentheses, so a
+	 * predicate with OR is not split by the key condition.
+	 *
+	 * @param baseQuery query without ORDER BY or paging clauses
+	 * @param keyField unique, sortable field selected by the query (usually id)
+	 * @param lastKey key of the last row read, null for the first page
+	 * @param pageSize rows per page
+	 * @return the page query
+	 */
+	public static String buildKeysetPageVQL(String baseQuery, String keyField, String lastKey, int pageSize) {
+		StringBuilder query = new StringBuilder();
+		if (lastKey == null) {
+			query.append(baseQuery);
+		}
+		else {
+			String keyCondition = keyField + " > '" + escape(lastKey) + "'";
+			int where = indexOfWhere(baseQuery);
+			if (where < 0) {
+				query.append(baseQuery).append(" WHERE ").append(keyCondition);
+			}
+			else {
+				query.append(baseQuery, 0, where)
+						.append("WHERE (")
+						.append(baseQuery.substring(where + WHERE.length()).trim())
+						.append(") AND ")
+						.append(keyCondition);
+			}
+		}
+		return query.append(" ORDER BY ").append(keyField).append(" ASC LIMIT ").append(pageSize).toString();
+	}
+
+	/**
+	 * Finds the WHERE keyword of the outer query: any case, delimited by whitespace
+	 * or parentheses, outside quoted strings and subqueries
+	 *
+	 * @param query VQL query
+	 * @return index of the keyword, -1 when the query has no WHERE clause
+	 */
+	private static int indexOfWhere(String query) {
+		int depth = 0;
+		boolean quoted = false;
+
+		for (int i = 0; i < query.length(); i++) {
+			char c = query.charAt(i);
+			if (quoted) {
+				if (c == '\\') {
+					i++;
+				}
+				else if (c == '\'') {
+					quoted = false;
+				}
+			}
+			else if (c == '\'') {
+				quoted = true;
+			}
+			else if (c == '(') {
+				depth++;
+			}
+			else if (c == ')') {
+				depth--;
+			}
+			else if (depth == 0
+					&& query.regionMatches(true, i, WHERE, 0, WHERE.length())
+					&& (i == 0 || isDelimiter(query.charAt(i - 1)))
+					&& (i + WHERE.length() == query.length() || isDelimiter(query.charAt(i + WHERE.length())))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isDelimiter(char c) {
+		return Character.isWhitespace(c) || c == '(' || c == ')';
+	}
+
+	/**
+	 * Escapes a value for use inside a quoted VQL string
+	 *
+	 * @param value value to escape
+	 * @return value with backslashes and single quotes escaped
+	 */
+	public static String escape(String value) {
+		if (value.indexOf('\\') < 0 && value.indexOf('\'') < 0) {
+			return value;
+		}
+		StringBuilder result = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '\'') {
+				result.append('\\');
+			}
+			result.append(c);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @param value value to measure
+	 * @return UTF-8 encoded length of the value
+	 */
+	private static int byteLength(String value) {
+		int bytes = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				bytes += 1;
+			} else if (c < 0x800 || Character.isSurrogate(c)) {
+				// a surrogate pair is 4 bytes, 2 per char
+				bytes += 2;
+			} else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+}
@@ -15,19 +15,27 @@
 package com.veeva.vault.custom.util.api;
 
 
+import com.veeva.vault.custom.model.APIConfigContext;
+import com.veeva.vault.custom.model.DocumentVersion;
+import com.veeva.vault.custom.model.DocumentVersionCatalog;
 import com.veeva.vault.custom.util.VpsBaseHelper;
+import com.veeva.vault.custom.util.VpsDocumentRoleResolver;
 import com.veeva.vault.custom.util.VpsUtilHelper;
 import com.veeva.vault.sdk.api.core.*;
 import com.veeva.vault.sdk.api.http.HttpMethod;
+import com.veeva.vault.sdk.api.http.HttpOperationError;
 import com.veeva.vault.sdk.api.http.HttpRequest;
 import com.veeva.vault.sdk.api.http.HttpResponseBodyValueType;
 import com.veeva.vault.sdk.api.http.HttpService;
 import com.veeva.vault.sdk.api.json.JsonArray;
-import com.veeva.vault.sdk.api.json.JsonData;
+import com.veeva.vault.sdk.api.json.JsonArrayBuilder;
 import com.veeva.vault.sdk.api.json.JsonObject;
+import com.veeva.vault.sdk.api.json.JsonObjectBuilder;
+import com.veeva.vault.sdk.api.json.JsonService;
 import com.veeva.vault.sdk.api.json.JsonValueType;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,19 +47,18 @@ public class VpsAPIClient extends VpsBaseHelper {
     private static final String APIFIELD_ASSIGNED_GROUPS = "assignedGroups";
     private static final String APIFIELD_ASSIGNED_USERS = "assignedUsers";
     private static final String APIFIELD_DOCUMENT_ROLES = "documentRoles";
+    private static final String APIFIELD_DATA = "data";
     private static final String APIFIELD_FROM_TEMPLATE = "fromTemplate";
+    private static final String APIFIELD_ID = "id";
+    private static final String APIFIELD_ID_PARAM = "idParam";
     private static final String APIFIELD_LABEL = "label__v";
     private static final String APIFIELD_NAME = "name__v";
-    private static final String APIFIELD_ERROR_MESSAGE = "message";
-    private static final String APIFIELD_ERROR_TYPE = "type";
     private static final String APIFIELD_QUERY = "q";
     private static final String PROCESS_ERROR = "ERROR";
     private static final String PROCESS_RACECONDITION = "RACE_CONDITION";
     private static final String PROCESS_SUCCESS = "SUCCESS";
-    private static final String RESPONSESTATUS_SUCCESS = "SUCCESS";
+    private static final int BULK_BATCH_SIZE = 500;
     private static final int RETRY_ATTEMPTS_COUNT = 5;
-    private static final String SDK_EXTERNAL_ID = "VpsAPIClient";
-    private static final String SETTING_APIVERSION = "api_version";
     private static final String URL_BINDER_CREATETEMPLATE = "/api/%s/objects/binders";
     private static final String URL_DOCUMENT_CREATETEMPLATE = "/api/%s/objects/documents";
     private static final String URL_OBJECT_CREATE = "/api/%s/vobjects/%s";
@@ -63,26 +70,35 @@ public class VpsAPIClient extends VpsBaseHelper {
     private static final String URL_QUERY = "/api/%s/query";
     private static final String URL_ROLES = "/api/%s/objects/documents/%s/roles/%s";
     private static final String URL_RETRIEVE_DOCUMENT_VERSIONS = "/api/%s/objects/documents/%s/versions";
+    private static final String VERSION_KEY_DELIMITER = "_";
 
 
     HttpService httpService = ServiceLocator.locate(HttpService.class);
-    String apiVersion = "v19.1";
+    JsonService jsonService = ServiceLocator.locate(JsonService.class);
+    String apiVersion;
     String apiConnection;
-   // VpsSettingRecord sdkSettings;
 
     /**
-     * Class to assist in making using Vault Query Language
+     * Client on the API version configured for the request, v19.1 when none is configured.
+     * The version is resolved on the first callout: the first client of a request that calls
+     * out reads the vps_setting__c rows once (see APIConfigContext); constructing a client runs no query.
      */
     public VpsAPIClient(String apiConnection) {
+        this(apiConnection, null);
+    }
+
+    public VpsAPIClient(String apiConnection, String apiVersion) {
         super();
 
         this.apiConnection = apiConnection;
+        this.apiVersion = apiVersion;
+    }
 
-//		VpsSettingHelper settingHelper = new VpsSettingHelper(SDK_EXTERNAL_ID,true);
-//		sdkSettings = settingHelper.items().get(SDK_EXTERNAL_ID);
-//		if (sdkSettings != null) {
-//			apiVersion = sdkSettings.getValue(SETTING_APIVERSION, apiVersion);
-//		}
+    private String getApiVersion() {
+        if (apiVersion == null) {
+            apiVersion = APIConfigContext.get().getApiVersion();
+        }
+        return apiVersion;
     }
 
     public Boolean createBinderFromTemplate(String templateName, Map<String, String> documentMetadata) {
@@ -101,9 +117,9 @@ public class VpsAPIClient extends VpsBaseHelper {
 
         String createTemplateUrl;
         if (isBinder) {
-            createTemplateUrl = String.format(URL_BINDER_CREATETEMPLATE, apiVersion);
+            createTemplateUrl = String.format(URL_BINDER_CREATETEMPLATE, getApiVersion());
         } else {
-            createTemplateUrl = String.format(URL_DOCUMENT_CREATETEMPLATE, apiVersion);
+            createTemplateUrl = String.format(URL_DOCUMENT_CREATETEMPLATE, getApiVersion());
         }
         getLogService().info("createDocumentFromTemplate {}", createTemplateUrl);
 
@@ -117,27 +133,12 @@ public class VpsAPIClient extends VpsBaseHelper {
             request.setBodyParam(fieldName, fieldValue);
         }
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("createDocumentFromTemplate {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("createDocumentFromTemplate", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("createDocumentFromTemplate", apiResponse)) {
                         successList.add(true);
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("createDocumentFromTemplate {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
 
                 })
@@ -147,72 +148,127 @@ public class VpsAPIClient extends VpsBaseHelper {
     }
 
     /**
-     * @param objectType
-     * @param fieldsToUpdate
+     * Creates one object record. API errors roll back the transaction; an HTTP error is logged.
+     *
+     * @param objectType object name
+     * @param fieldsToUpdate field values of the record
+     * @return id of the created record, "" on an HTTP error
      */
+    @SuppressWarnings("unchecked")
     public String createObject(String objectType, Map<String, String> fieldsToUpdate) {
+        List<Map<String, String>> records = VaultCollections.newList();
+        records.add(fieldsToUpdate);
+        VpsAPIRecordResult result = createObjects(objectType, records).get(0);
 
-        LogService logService = ServiceLocator.locate(LogService.class);
-        HttpService httpService = ServiceLocator.locate(HttpService.class);
-        final String[] usertaskId = {""};
-        List<String> usertaskIdList = VaultCollections.newList();
+        if (result.isSuccess()) {
+            return result.getId();
+        }
+        for (VpsAPIError error : result.getErrors()) {
+            if (!VpsAPIError.CATEGORY_HTTP.equals(error.getCategory())) {
+                throw new RollbackException("OPERATION_NOT_ALLOWED", "HttpService Error on HTTP Call Out: " + error.getMessage());
+            }
+        }
+        return "";
+    }
 
-        HttpRequest request = httpService.newHttpRequest(apiConnection);
-        request.setMethod(HttpMethod.POST);
-        String createObjectPath = String.format(
-                URL_OBJECT_CREATE,
-                apiVersion,
-                objectType);
-        request.appendPath(createObjectPath);
-
-        for (String key : fieldsToUpdate.keySet()) {
-            request.setBodyParam(key, fieldsToUpdate.get(key));
+    /**
+     * Creates object records in batches of BULK_BATCH_SIZE
+     *
+     * @param objectType object name
+     * @param records field values of each record
+     * @return one result per input record, in input order
+     */
+    public List<VpsAPIRecordResult> createObjects(String objectType, List<Map<String, String>> records) {
+        return saveObjects(objectType, null, records);
+    }
+
+    /**
+     * Creates or updates object records in batches of BULK_BATCH_SIZE. Records are
+     * matched on idParam; each record must carry a value for that field.
+     *
+     * @param objectType object name
+     * @param idParam unique field used to match existing records, e.g. external_id__v
+     * @param records field values of each record
+     * @return one result per input record, in input order
+     */
+    public List<VpsAPIRecordResult> upsertObjects(String objectType, String idParam, List<Map<String, String>> records) {
+        return saveObjects(objectType, idParam, records);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<VpsAPIRecordResult> saveObjects(String objectType, String idParam, List<Map<String, String>> records) {
+        List<VpsAPIRecordResult> results = VaultCollections.newList();
+        String saveObjectUrl = String.format(URL_OBJECT_CREATE, getApiVersion(), objectType);
+        getLogService().info("saveObjects {} records {}", saveObjectUrl, records.size());
+
+        for (int start = 0; start < records.size(); start += BULK_BATCH_SIZE) {
+            List<Map<String, String>> batch = records.subList(start, Math.min(start + BULK_BATCH_SIZE, records.size()));
+            JsonArrayBuilder body = jsonService.newJsonArrayBuilder();
+            for (Map<String, String> record : batch) {
+                JsonObjectBuilder row = jsonService.newJsonObjectBuilder();
+                for (String key : record.keySet()) {
+                    row.setValue(key, record.get(key));
+                }
+                body.add(row.build());
+            }
+
+            HttpRequest request = httpService.newHttpRequest(apiConnection)
+                    .setMethod(HttpMethod.POST)
+                    .setHeader("Content-Type", "application/json")
+                    .setBody(body.build())
+                    .appendPath(saveObjectUrl);
+            if (idParam != null) {
+                request.setQuerystringParam(APIFIELD_ID_PARAM, idParam);
+            }
+
+            List<VpsAPIResponse> batchResponse = VaultCollections.newList();
+            httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                    .onError(response -> batchResponse.add(VpsAPIResponse.httpError(response)))
+                    .onSuccess(response -> batchResponse.add(new VpsAPIResponse(response.getResponseBody())))
+                    .execute();
+            if (batchResponse.isEmpty()) {
+                batchResponse.add(VpsAPIResponse.httpError("No response"));
+            }
+            readRecordResults("saveObjects", batchResponse.get(0), batch.size(), results);
         }
-        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
-                .onSuccess(httpResponse -> {
-                    int responseCode = httpResponse.getHttpStatusCode();
-                    logService.info("RESPONSE: " + responseCode);
-                    logService.info("RESPONSE: " + httpResponse.getResponseBody());
-
-                    JsonData response = httpResponse.getResponseBody();
-
-                    //This API call just initiates a workflow. Log success or errors messages depending on the results of the call.
-                    if (response.isValidJson()) {
-                        String responseStatus = response.getJsonObject().getValue("responseStatus", JsonValueType.STRING);
-                        JsonObject data = response.getJsonObject().getValue("data", JsonValueType.OBJECT);
-                        usertaskIdList.add(data.getValue("id", JsonValueType.STRING));
-                        if (responseStatus.equals("SUCCESS")) {
-                            logService.info("Starting HTTP Create Object");
-                        } else {
-                            logService.info("Failed to create object.");
-                            if (response.getJsonObject().contains("responseMessage") == true) {
-                                String responseMessage = response.getJsonObject().getValue("responseMessage", JsonValueType.STRING);
-                                logService.error("ERROR: {}", responseMessage);
-                                throw new RollbackException("OPERATION_NOT_ALLOWED", "HttpService Error on HTTP Call Out: " + responseMessage);
-                            }
-                            if (response.getJsonObject().contains("errors") == true) {
-                                JsonArray errors = response.getJsonObject().getValue("errors", JsonValueType.ARRAY);
-                                String type = errors.getValue(0, JsonValueType.OBJECT).getValue("type", JsonValueType.STRING);
-                                String message = errors.getValue(0, JsonValueType.OBJECT).getValue("message", JsonValueType.STRING);
-                                logService.error("ERROR {}: {}", type, message);
-                                throw new RollbackException("OPERATION_NOT_ALLOWED", "HttpService Error on HTTP Call out: " + message);
-                            }
-                        }
-                    }
-                })
-                .onError(httpOperationError -> {
-                    int responseCode = httpOperationError.getHttpResponse().getHttpStatusCode();
-                    logService.info("RESPONSE: " + responseCode);
-                    logService.info(httpOperationError.getMessage());
-                    logService.info(httpOperationError.getHttpResponse().getResponseBody());
-                })
-                .execute();
-        if (usertaskId != null) {
-            return usertaskIdList.get(0);
-        } else {
-            return "";
+
+        return results;
+    }
+
+    /**
+     * Maps the per row responses of a bulk call to results. When the whole call failed,
+     * every row of the batch gets the errors of the call.
+     */
+    private void readRecordResults(String source,
+                                   VpsAPIResponse apiResponse,
+                                   int batchSize,
+                                   List<VpsAPIRecordResult> results) {
+        JsonArray rows = apiResponse.isSuccess() ? apiResponse.getArray(APIFIELD_DATA) : null;
+        if (rows == null) {
+            logErrors(source, null, apiResponse);
         }
 
+        for (int i = 0; i < batchSize; i++) {
+            if (rows == null) {
+                results.add(new VpsAPIRecordResult(apiResponse.decodeErrors()));
+            }
+            else if (i >= rows.getSize()) {
+                List<VpsAPIError> errors = VaultCollections.newList();
+                errors.add(new VpsAPIError(null, "No response for row " + (results.size() + 1)));
+                results.add(new VpsAPIRecordResult(errors));
+            }
+            else {
+                VpsAPIResponse rowResponse = new VpsAPIResponse(rows.getValue(i, JsonValueType.OBJECT));
+                JsonObject data = rowResponse.getObject(APIFIELD_DATA);
+                if (rowResponse.isSuccess() && data != null) {
+                    results.add(new VpsAPIRecordResult(data.getValue(APIFIELD_ID, JsonValueType.STRING)));
+                }
+                else {
+                    logErrors(source, "row " + (results.size() + 1), rowResponse);
+                    results.add(new VpsAPIRecordResult(rowResponse.decodeErrors()));
+                }
+            }
+        }
     }
 
     public Map<String, String> getDocumentLifecycleActions(String docId,
@@ -221,20 +277,16 @@ public class VpsAPIClient extends VpsBaseHelper {
 
         Map<String, String> lifecycleActionMap = VaultCollections.newMap();
 
-        String lifeycleActionUrl = String.format(URL_DOCUMENT_LIFEYCLEACTIONS, apiVersion, docId, majorVersion, minorVersion);
+        String lifeycleActionUrl = String.format(URL_DOCUMENT_LIFEYCLEACTIONS, getApiVersion(), docId, majorVersion, minorVersion);
         getLogService().info("getDocumentLifecycleActions {}", lifeycleActionUrl);
 
         HttpRequest request = httpService.newHttpRequest(apiConnection)
                 .appendPath(lifeycleActionUrl);
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("getDocumentLifecycleActions {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("getDocumentLifecycleActions", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("getDocumentLifecycleActions", apiResponse)) {
                         JsonArray actionArray = apiResponse.getArray(APIFIELD_ACTIONS);
                         for (int i = 0; i < actionArray.getSize(); i++) {
                             JsonObject lifecycleAction = actionArray.getValue(i, JsonValueType.OBJECT);
@@ -243,17 +295,6 @@ public class VpsAPIClient extends VpsBaseHelper {
                                     lifecycleAction.getValue(APIFIELD_LABEL, JsonValueType.STRING),
                                     lifecycleAction.getValue(APIFIELD_NAME, JsonValueType.STRING));
                         }
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("getDocumentLifecycleActions {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
                 })
                 .execute();
@@ -265,7 +306,7 @@ public class VpsAPIClient extends VpsBaseHelper {
                                                     String majorVersion,
                                                     String minorVersion, String lifecycleActionName) {
 
-        String lifeycleActionUrl = String.format(URL_INITIATE_DOCUMENT_LIFEYCLEACTIONS, apiVersion, docId, majorVersion, minorVersion, lifecycleActionName);
+        String lifeycleActionUrl = String.format(URL_INITIATE_DOCUMENT_LIFEYCLEACTIONS, getApiVersion(), docId, majorVersion, minorVersion, lifecycleActionName);
         getLogService().info("initiateDocumentLifecycleActions {}", lifeycleActionUrl);
         List<Boolean> successList = VaultCollections.newList();
 
@@ -274,28 +315,13 @@ public class VpsAPIClient extends VpsBaseHelper {
 				.setMethod(HttpMethod.PUT);
 
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("initiateDocumentLifecycleActions {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("initiateDocumentLifecycleActions", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("initiateDocumentLifecycleActions", apiResponse)) {
                         getLogService().info("Initiating Lifecycle Action");
                         successList.add(true);
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("initiateDocumentLifecycleActions {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
                 })
                 .execute();
@@ -303,50 +329,57 @@ public class VpsAPIClient extends VpsBaseHelper {
         return successList.size() > 0;
     }
 
+    /**
+     * Batch overload of initiateDocumentLifecycleActions. The versions are sent one request
+     * at a time; a failed version is logged and does not stop the others.
+     *
+     * @param versionKeys document versions (see versionKey)
+     * @param lifecycleActionName lifecycle action to initiate on every version
+     * @return success by version key
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Boolean> initiateDocumentLifecycleActions(Collection<String> versionKeys, String lifecycleActionName) {
+        Map<String, Boolean> results = VaultCollections.newMap();
+        getLogService().info("initiateDocumentLifecycleActions {} on {} versions", lifecycleActionName, versionKeys.size());
+        for (String versionKey : versionKeys) {
+            List<String> version = StringUtils.split(versionKey, VERSION_KEY_DELIMITER);
+            HttpRequest request = httpService.newHttpRequest(apiConnection)
+                    .appendPath(String.format(URL_INITIATE_DOCUMENT_LIFEYCLEACTIONS, getApiVersion(),
+                            version.get(0), version.get(1), version.get(2), lifecycleActionName))
+                    .setMethod(HttpMethod.PUT);
+            results.put(versionKey, decodeResponse("initiateDocumentLifecycleActions", versionKey, send(request)));
+        }
+        return results;
+    }
+
 
+    /**
+     * Users and groups of a document role, in the "user:{id}" / "group:{id}" form. On the local
+     * connection the role is read with a doc_role__sys query (VpsDocumentRoleResolver) instead of
+     * a roles GET; use the resolver directly to read one role on many documents.
+     */
     public List<String> getDocumentUsersAndGroupsFromRole(String docId, String roleApiName) {
+        if (APIConfigContext.DEFAULT_CONNECTION.equals(apiConnection)) {
+            return new VpsDocumentRoleResolver()
+                    .resolve(VaultCollections.asList(docId), roleApiName)
+                    .get(docId)
+                    .toUsersAndGroups();
+        }
+
         List<String> usersAndGroups = VaultCollections.newList();
-        String roleUrl = String.format(URL_ROLES, apiVersion, docId, roleApiName);
+        String roleUrl = String.format(URL_ROLES, getApiVersion(), docId, roleApiName);
         getLogService().info("getDocumentUsersAndGroupsFromRole {}", roleUrl);
         List<Boolean> successList = VaultCollections.newList();
         HttpRequest request = httpService.newHttpRequest(apiConnection)
                 .appendPath(roleUrl);
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("getDocumentLifecycleActions {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("getDocumentUsersAndGroupsFromRole", response))
                 .onSuccess(response -> {
 
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
-                        JsonArray roleArray = apiResponse.getArray(APIFIELD_DOCUMENT_ROLES);
-
-                        for (int i = 0; i < roleArray.getSize(); i++) {
-                            JsonObject role = roleArray.getValue(i, JsonValueType.OBJECT);
-
-                            JsonArray groupArray = role.getValue(APIFIELD_ASSIGNED_GROUPS, JsonValueType.ARRAY);
-                            for (int g = 0; g < groupArray.getSize(); g++) {
-                                usersAndGroups.add("group:" + groupArray.getValue(g, JsonValueType.NUMBER));
-                            }
-                            JsonArray userArray = role.getValue(APIFIELD_ASSIGNED_USERS, JsonValueType.ARRAY);
-                            for (int u = 0; u < userArray.getSize(); u++) {
-                                usersAndGroups.add("user:" + userArray.getValue(u, JsonValueType.NUMBER));
-                            }
-                        }
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("getDocumentLifecycleActions {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
+                    if (decodeResponse("getDocumentUsersAndGroupsFromRole", apiResponse)) {
+                        readUsersAndGroups(apiResponse, usersAndGroups);
                     }
                 })
                 .execute();
@@ -354,6 +387,23 @@ public class VpsAPIClient extends VpsBaseHelper {
         return usersAndGroups;
     }
 
+    private void readUsersAndGroups(VpsAPIResponse apiResponse, List<String> usersAndGroups) {
+        JsonArray roleArray = apiResponse.getArray(APIFIELD_DOCUMENT_ROLES);
+
+        for (int i = 0; i < roleArray.getSize(); i++) {
+            JsonObject role = roleArray.getValue(i, JsonValueType.OBJECT);
+
+            JsonArray groupArray = role.getValue(APIFIELD_ASSIGNED_GROUPS, JsonValueType.ARRAY);
+            for (int g = 0; g < groupArray.getSize(); g++) {
+                usersAndGroups.add("group:" + groupArray.getValue(g, JsonValueType.NUMBER));
+            }
+            JsonArray userArray = role.getValue(APIFIELD_ASSIGNED_USERS, JsonValueType.ARRAY);
+            for (int u = 0; u < userArray.getSize(); u++) {
+                usersAndGroups.add("user:" + userArray.getValue(u, JsonValueType.NUMBER));
+            }
+        }
+    }
+
     public Boolean initiateObjectAction(String objectName,
                                         String userActionName,
                                         List<String> idList) {
@@ -384,7 +434,7 @@ public class VpsAPIClient extends VpsBaseHelper {
                                         Boolean rollbackOnError) {
         String initiateObjectActionUrl = String.format(
                 URL_INITIATE_OBJECT_ACTION,
-                apiVersion,
+                getApiVersion(),
                 objectName,
                 objectId,
                 userActionName);
@@ -408,48 +458,40 @@ public class VpsAPIClient extends VpsBaseHelper {
         while ((batchAttempts.size() < RETRY_ATTEMPTS_COUNT)
                 && (!results.contains(PROCESS_ERROR))
                 && (!results.contains(PROCESS_SUCCESS))) {
-            httpService.send(request, HttpResponseBodyValueType.STRING)
+            httpService.send(request, HttpResponseBodyValueType.JSONDATA)
                     .onError(response -> {
                         batchAttempts.add(PROCESS_ERROR);
                         results.add(PROCESS_ERROR);
 
-                        String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                        getLogService().error("initiateObjectAction {}", errorMessage);
-                        getErrorList().add(errorMessage);
+                        decodeHttpError("initiateObjectAction", response);
                     })
                     .onSuccess(response -> {
                         VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                        if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                        if (apiResponse.isSuccess()) {
                             batchAttempts.add(PROCESS_SUCCESS);
                             results.add(PROCESS_SUCCESS);
                         }
                         //This is HTTP 200, but an application level error
                         else {
-                            JsonArray errors = apiResponse.getErrors();
-                            if (errors != null) {
-                                for (int i = 0; i < errors.getSize(); i++) {
-                                    JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                    String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                    String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                    getLogService().error("initiateObjectAction {}", errorType + " - " + errorMessage);
-                                    getErrorList().add(errorType + " - " + errorMessage);
-
-                                    //handles race conditions for record level locking
-                                    if (errorType.equals(PROCESS_RACECONDITION)) {
-                                        results.add(PROCESS_RACECONDITION);
-                                        sleep();
-
-                                        //if we reached the max number of retries and rollebackOnError=true
-                                        //throw rollback exception
-                                        if ((batchAttempts.size() == RETRY_ATTEMPTS_COUNT) && (rollbackOnError)) {
-                                            throw new RollbackException("OPERATION_NOT_ALLOWED", errorMessage + PROCESS_RACECONDITION);
-                                        }
-                                    } else {
-                                        results.add(PROCESS_ERROR);
-
-                                        if (rollbackOnError) {
-                                            throw new RollbackException("OPERATION_NOT_ALLOWED", errorMessage);
-                                        }
+                            for (VpsAPIError error : apiResponse.decodeErrors()) {
+                                getLogService().error("initiateObjectAction {}", error.toString());
+                                getErrorList().add(error.toString());
+
+                                //handles race conditions for record level locking
+                                if (error.isRetryable()) {
+                                    results.add(PROCESS_RACECONDITION);
+                                    sleep();
+
+                                    //if we reached the max number of retries and rollebackOnError=true
+                                    //throw rollback exception
+                                    if ((batchAttempts.size() == RETRY_ATTEMPTS_COUNT) && (rollbackOnError)) {
+                                        throw new RollbackException("OPERATION_NOT_ALLOWED", error.getMessage() + PROCESS_RACECONDITION);
+                                    }
+                                } else {
+                                    results.add(PROCESS_ERROR);
+
+                                    if (rollbackOnError) {
+                                        throw new RollbackException("OPERATION_NOT_ALLOWED", error.getMessage());
                                     }
                                 }
                             }
@@ -472,7 +514,7 @@ public class VpsAPIClient extends VpsBaseHelper {
 
         List<VpsVQLResponse> resultList = VaultCollections.newList();
 
-        String queryUrl = String.format(URL_QUERY, apiVersion);
+        String queryUrl = String.format(URL_QUERY, getApiVersion());
         getLogService().info("runVQL {}", queryUrl);
 
         //now call GET on the documents available user actions and build a map
@@ -481,27 +523,13 @@ public class VpsAPIClient extends VpsBaseHelper {
                 .setBodyParam(APIFIELD_QUERY, vpsVQLRequest.getVQL())
                 .appendPath(queryUrl);
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("runVQL {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("runVQL", response))
                 .onSuccess(response -> {
                     VpsVQLResponse vpsVQLResponse = new VpsVQLResponse(response.getResponseBody());
                     resultList.add(vpsVQLResponse);
 
-                    JsonArray errors = vpsVQLResponse.getErrors();
-                    if (errors != null) {
-                        for (int i = 0; i < errors.getSize(); i++) {
-                            JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                            String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                            String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                            getLogService().error("VpsVQLResponse {}", errorType + " - " + errorMessage);
-                            getErrorList().add(errorType + " - " + errorMessage);
-                        }
-                    }
-
+                    logErrors("runVQL", null, vpsVQLResponse);
                 })
                 .execute();
 
@@ -512,6 +540,23 @@ public class VpsAPIClient extends VpsBaseHelper {
         }
     }
 
+    /**
+     * Runs each chunked request (see VpsVQLRequest.newChunkedRequests) and merges the responses
+     *
+     * @param vpsVQLRequests requests to run
+     * @return the responses of the requests that succeeded
+     */
+    public List<VpsVQLResponse> runVQL(List<VpsVQLRequest> vpsVQLRequests) {
+        List<VpsVQLResponse> responses = VaultCollections.newList();
+        for (VpsVQLRequest vpsVQLRequest : vpsVQLRequests) {
+            VpsVQLResponse response = runVQL(vpsVQLRequest);
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
     public Boolean startDocumentWorkflow(String docId,
                                          String majorVersion,
                                          String minorVersion,
@@ -524,7 +569,7 @@ public class VpsAPIClient extends VpsBaseHelper {
 
         String startWorkflowUrl = String.format(
                 URL_DOCUMENT_LIFEYCLEACTIONS,
-                apiVersion,
+                getApiVersion(),
                 docId,
                 majorVersion,
                 minorVersion) + lifecycleActionName;
@@ -547,27 +592,12 @@ public class VpsAPIClient extends VpsBaseHelper {
                 .setBodyParam(roleName, VpsUtilHelper.setToString(usersAndGroups, ",", false))
                 .appendPath(startWorkflowUrl);
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("startDocumentWorkflow {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("startDocumentWorkflow", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("startDocumentWorkflow", apiResponse)) {
                         successList.add(true);
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("startDocumentWorkflow {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
 
                 })
@@ -586,7 +616,7 @@ public class VpsAPIClient extends VpsBaseHelper {
 
         String startWorkflowUrl = String.format(
                 URL_DOCUMENT_LIFEYCLEACTIONS,
-                apiVersion,
+                getApiVersion(),
                 docId,
                 majorVersion,
                 minorVersion) + lifecycleActionName;
@@ -599,27 +629,12 @@ public class VpsAPIClient extends VpsBaseHelper {
                 request.setBodyParam(key, requestParams.get(key));
             }
         }
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("startDocumentWorkflow {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("startDocumentWorkflow", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("startDocumentWorkflow", apiResponse)) {
                         successList.add(true);
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("startDocumentWorkflow {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
 
                 })
@@ -637,8 +652,6 @@ public class VpsAPIClient extends VpsBaseHelper {
     public boolean updateDocumentFields(String docID, String majorVersion,
                                         String minorVersion, Map<String, String> documentFieldsToUpdate) {
 
-        LogService logService = ServiceLocator.locate(LogService.class);
-        HttpService httpService = ServiceLocator.locate(HttpService.class);
         List<Boolean> successList = VaultCollections.newList();
         //A `newLocalHttpRequest` is an Http Callout against the same vault (local) using the user that initiated the SDK code.
         //The user must have access to the action being performed or the Vault API will return an access error.
@@ -648,7 +661,7 @@ public class VpsAPIClient extends VpsBaseHelper {
 //		request.appendPath(URL_DOCUMENT_UPDATE,apiVersion,docID,majorVersion,minorVersion);
         String initiateDocumentUpdateUrl = String.format(
                 URL_UPDATE_DOCUMENT_VERSION,
-                apiVersion,
+                getApiVersion(),
                 docID,
                 majorVersion,
                 minorVersion);
@@ -658,27 +671,12 @@ public class VpsAPIClient extends VpsBaseHelper {
             request.setBodyParam(key, documentFieldsToUpdate.get(key));
         }
 
-		httpService.send(request, HttpResponseBodyValueType.STRING)
-				.onError(response -> {
-					String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-					getLogService().error("updateDocumentFields {}", errorMessage);
-					getErrorList().add(errorMessage);
-				})
+		httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+				.onError(response -> decodeHttpError("updateDocumentFields", response))
 				.onSuccess(response -> {
 					VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-					if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+					if (decodeResponse("updateDocumentFields", apiResponse)) {
 						successList.add(true);
-					} else {
-						JsonArray errors = apiResponse.getErrors();
-						if (errors != null) {
-							for (int i = 0; i < errors.getSize(); i++) {
-								JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-								String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-								String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-								getLogService().error("updateDocumentFields {}", errorType + " - " + errorMessage);
-								getErrorList().add(errorType + " - " + errorMessage);
-							}
-						}
 					}
 
 				})
@@ -695,8 +693,6 @@ public class VpsAPIClient extends VpsBaseHelper {
     public boolean updateBinderFields(String docID, String majorVersion,
                                         String minorVersion, Map<String, String> FieldsToUpdate) {
 
-        LogService logService = ServiceLocator.locate(LogService.class);
-        HttpService httpService = ServiceLocator.locate(HttpService.class);
         List<Boolean> successList = VaultCollections.newList();
         //A `newLocalHttpRequest` is an Http Callout against the same vault (local) using the user that initiated the SDK code.
         //The user must have access to the action being performed or the Vault API will return an access error.
@@ -704,7 +700,7 @@ public class VpsAPIClient extends VpsBaseHelper {
         request.setMethod(HttpMethod.PUT);
         String initiateDocumentUpdateUrl = String.format(
                 URL_UPDATE_BINDER_VERSION,
-                apiVersion,
+                getApiVersion(),
                 docID,
                 majorVersion,
                 minorVersion);
@@ -714,27 +710,12 @@ public class VpsAPIClient extends VpsBaseHelper {
             request.setBodyParam(key, FieldsToUpdate.get(key));
         }
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("updateDocumentFields {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("updateDocumentFields", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("updateBinderFields", apiResponse)) {
                         successList.add(true);
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("updateBinderFields {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
 
                 })
@@ -743,6 +724,107 @@ public class VpsAPIClient extends VpsBaseHelper {
         return successList.size() > 0;
     }
     /**
+     * Builds the correlation key of a document version for the batch overloads
+     */
+    public static String versionKey(String docId, String majorVersion, String minorVersion) {
+        return docId + VERSION_KEY_DELIMITER + majorVersion + VERSION_KEY_DELIMITER + minorVersion;
+    }
+
+    /**
+     * Batch overload of updateDocumentFields. The versions are sent one request at a time;
+     * a failed version is logged and does not stop the others.
+     *
+     * @param fieldsByVersionKey fields to update by document version (see versionKey)
+     * @return success by version key
+     */
+    public Map<String, Boolean> updateDocumentFields(Map<String, Map<String, String>> fieldsByVersionKey) {
+        return updateVersionFields("updateDocumentFields", URL_UPDATE_DOCUMENT_VERSION, fieldsByVersionKey);
+    }
+
+    /**
+     * Batch overload of updateBinderFields, see updateDocumentFields
+     *
+     * @param fieldsByVersionKey fields to update by binder version (see versionKey)
+     * @return success by version key
+     */
+    public Map<String, Boolean> updateBinderFields(Map<String, Map<String, String>> fieldsByVersionKey) {
+        return updateVersionFields("updateBinderFields", URL_UPDATE_BINDER_VERSION, fieldsByVersionKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Boolean> updateVersionFields(String source,
+                                                     String urlFormat,
+                                                     Map<String, Map<String, String>> fieldsByVersionKey) {
+        Map<String, Boolean> results = VaultCollections.newMap();
+        getLogService().info("{} {} versions", source, fieldsByVersionKey.size());
+        for (String versionKey : fieldsByVersionKey.keySet()) {
+            List<String> version = StringUtils.split(versionKey, VERSION_KEY_DELIMITER);
+            HttpRequest request = httpService.newHttpRequest(apiConnection)
+                    .setMethod(HttpMethod.PUT)
+                    .appendPath(String.format(urlFormat, getApiVersion(), version.get(0), version.get(1), version.get(2)));
+            Map<String, String> fieldsToUpdate = fieldsByVersionKey.get(versionKey);
+            for (String key : fieldsToUpdate.keySet()) {
+                request.setBodyParam(key, fieldsToUpdate.get(key));
+            }
+            results.put(versionKey, decodeResponse(source, versionKey, send(request)));
+        }
+        return results;
+    }
+
+    /**
+     * Sends one request of a batch overload. An HTTP error, or a send that runs neither
+     * callback, gives a FAILURE response so it is decoded like an API error.
+     */
+    @SuppressWarnings("unchecked")
+    private VpsAPIResponse send(HttpRequest request) {
+        List<VpsAPIResponse> result = VaultCollections.newList();
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> result.add(VpsAPIResponse.httpError(response)))
+                .onSuccess(response -> result.add(new VpsAPIResponse(response.getResponseBody())))
+                .execute();
+        if (result.isEmpty()) {
+            return VpsAPIResponse.httpError("No response");
+        }
+        return result.get(0);
+    }
+
+    /**
+     * Shared decoding of an api response. Errors are logged and added to the error list.
+     *
+     * @param source calling method, used in the log
+     * @param apiResponse response to decode
+     * @return true if the response status is SUCCESS
+     */
+    private boolean decodeResponse(String source, VpsAPIResponse apiResponse) {
+        return decodeResponse(source, null, apiResponse);
+    }
+
+    /**
+     * @param key correlation key of a batch request, prefixed to the errors (optional)
+     */
+    private boolean decodeResponse(String source, String key, VpsAPIResponse apiResponse) {
+        if (apiResponse.isSuccess()) {
+            return true;
+        }
+        logErrors(source, key, apiResponse);
+        return false;
+    }
+
+    private void logErrors(String source, String key, VpsAPIResponse apiResponse) {
+        for (VpsAPIError error : apiResponse.decodeErrors()) {
+            String errorMessage = key == null ? error.toString() : key + ": " + error;
+            getLogService().error("{} {}", source, errorMessage);
+            getErrorList().add(errorMessage);
+        }
+    }
+
+    private void decodeHttpError(String source, HttpOperationError httpOperationError) {
+        logErrors(source, null, VpsAPIResponse.httpError(httpOperationError));
+    }
+
+    /**
+     * One GET per document, see retrieveDocumentVersions(Collection) for many documents.
+     *
      * @param docID
      *
      * */
@@ -750,8 +832,6 @@ public class VpsAPIClient extends VpsBaseHelper {
 
         Map<String, String> versionInfo = VaultCollections.newMap();
 
-        LogService logService = ServiceLocator.locate(LogService.class);
-        HttpService httpService = ServiceLocator.locate(HttpService.class);
         List<Boolean> successList = VaultCollections.newList();
         //A `newLocalHttpRequest` is an Http Callout against the same vault (local) using the user that initiated the SDK code.
         //The user must have access to the action being performed or the Vault API will return an access error.
@@ -759,20 +839,16 @@ public class VpsAPIClient extends VpsBaseHelper {
         request.setMethod(HttpMethod.GET);
         String apiURL = String.format(
                 URL_RETRIEVE_DOCUMENT_VERSIONS,
-                apiVersion,
+                getApiVersion(),
                 docID);
 
         request.appendPath(apiURL);
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("retrieveDocumentVersions {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("retrieveDocumentVersions", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("retrieveDocumentVersions", apiResponse)) {
                         successList.add(true);
                         JsonArray versionsArray = apiResponse.getArray("versions");
 
@@ -782,17 +858,6 @@ public class VpsAPIClient extends VpsBaseHelper {
                             String versionValue= versions.getValue("value", JsonValueType.STRING);
                             versionInfo.put(versionNumber,versionValue);
                         }
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("retrieveDocumentVersions {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
 
                 })
@@ -800,6 +865,26 @@ public class VpsAPIClient extends VpsBaseHelper {
 
         return versionInfo;
     }
+    /**
+     * Reads the versions of many documents with one chunked allversions query through the
+     * request scoped DocumentVersionCatalog. The query runs as the SDK user in this vault,
+     * not on the client's connection.
+     *
+     * @param docIds document ids
+     * @return versions by document id; every document id is in the map
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, List<DocumentVersion>> retrieveDocumentVersions(Collection<String> docIds) {
+        DocumentVersionCatalog versionCatalog = DocumentVersionCatalog.get();
+        versionCatalog.prefetch(docIds);
+
+        Map<String, List<DocumentVersion>> versionsByDocId = VaultCollections.newMap();
+        for (String docId : docIds) {
+            versionsByDocId.put(docId, versionCatalog.getVersions(docId));
+        }
+        return versionsByDocId;
+    }
+
     /**
      * @param docID
      * @param majorVersion
@@ -809,8 +894,6 @@ public class VpsAPIClient extends VpsBaseHelper {
     public boolean updateDocumentBulk(String docID, String majorVersion,
                                         String minorVersion, Map<String, String> documentFieldsToUpdate, String apiConnection) {
 
-        LogService logService = ServiceLocator.locate(LogService.class);
-        HttpService httpService = ServiceLocator.locate(HttpService.class);
         List<Boolean> successList = VaultCollections.newList();
         //A `newLocalHttpRequest` is an Http Callout against the same vault (local) using the user that initiated the SDK code.
         //The user must have access to the action being performed or the Vault API will return an access error.
@@ -820,7 +903,7 @@ public class VpsAPIClient extends VpsBaseHelper {
 //		request.appendPath(URL_DOCUMENT_UPDATE,apiVersion,docID,majorVersion,minorVersion);
         String initiateDocumentUpdateUrl = String.format(
                 URL_UPDATE_DOCUMENT_VERSION,
-                apiVersion,
+                getApiVersion(),
                 docID,
                 majorVersion,
                 minorVersion);
@@ -830,27 +913,12 @@ public class VpsAPIClient extends VpsBaseHelper {
             request.setBodyParam(key, documentFieldsToUpdate.get(key));
         }
 
-        httpService.send(request, HttpResponseBodyValueType.STRING)
-                .onError(response -> {
-                    String errorMessage = "HTTP Status Code: " + response.getHttpResponse().getHttpStatusCode();
-                    getLogService().error("updateDocumentFields {}", errorMessage);
-                    getErrorList().add(errorMessage);
-                })
+        httpService.send(request, HttpResponseBodyValueType.JSONDATA)
+                .onError(response -> decodeHttpError("updateDocumentFields", response))
                 .onSuccess(response -> {
                     VpsAPIResponse apiResponse = new VpsAPIResponse(response.getResponseBody());
-                    if (apiResponse.getResponseStatus().equals(RESPONSESTATUS_SUCCESS)) {
+                    if (decodeResponse("updateDocumentFields", apiResponse)) {
                         successList.add(true);
-                    } else {
-                        JsonArray errors = apiResponse.getErrors();
-                        if (errors != null) {
-                            for (int i = 0; i < errors.getSize(); i++) {
-                                JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
-                                String errorType = error.getValue(APIFIELD_ERROR_TYPE, JsonValueType.STRING);
-                                String errorMessage = error.getValue(APIFIELD_ERROR_MESSAGE, JsonValueType.STRING);
-                                getLogService().error("updateDocumentFields {}", errorType + " - " + errorMessage);
-                                getErrorList().add(errorType + " - " + errorMessage);
-                            }
-                        }
                     }
 
                 })
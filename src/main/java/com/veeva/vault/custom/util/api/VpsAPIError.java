@@ -0,0 +1,96 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsAPIError
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ *---------------------------------------------------------------------
+ * Description: One error of a Vault API response, classified into a
+ *              category so callers can decide whether to retry.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util.api;
+
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+
+@UserDefinedClassInfo()
+public class VpsAPIError {
+
+	public static final String CATEGORY_HTTP = "HTTP";
+	public static final String CATEGORY_OTHER = "OTHER";
+	public static final String CATEGORY_PERMISSION = "PERMISSION";
+	public static final String CATEGORY_RACE_CONDITION = "RACE_CONDITION";
+	public static final String CATEGORY_VALIDATION = "VALIDATION";
+	public static final String TYPE_HTTP_ERROR = "HTTP_ERROR";
+
+	private String type;
+	private String message;
+	private String category;
+
+	public VpsAPIError(String type, String message) {
+		super();
+
+		this.type = type;
+		this.message = message;
+		this.category = categorize(type);
+	}
+
+	public String getCategory() {
+		return category;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return true for record locking errors, which succeed when the call is repeated
+	 */
+	public boolean isRetryable() {
+		return CATEGORY_RACE_CONDITION.equals(category);
+	}
+
+	public String toString() {
+		return type + " - " + message;
+	}
+
+	/**
+	 * Maps a Vault API error type to its category
+	 *
+	 * @param type error type from the errors array of the response
+	 * @return one of the CATEGORY constants
+	 */
+	public static String categorize(String type) {
+		if (type == null) {
+			return CATEGORY_OTHER;
+		}
+		switch (type) {
+			case "RACE_CONDITION":
+				return CATEGORY_RACE_CONDITION;
+			case "INSUFFICIENT_ACCESS":
+			case "NO_PERMISSION":
+			case "INVALID_SESSION_ID":
+			case "INACTIVE_USER":
+				return CATEGORY_PERMISSION;
+			case "INVALID_DATA":
+			case "INVALID_FIELD":
+			case "PARAMETER_REQUIRED":
+			case "ATTRIBUTE_NOT_SUPPORTED":
+			case "OPERATION_NOT_ALLOWED":
+			case "MALFORMED_URL":
+				return CATEGORY_VALIDATION;
+			case TYPE_HTTP_ERROR:
+				return CATEGORY_HTTP;
+			default:
+				return CATEGORY_OTHER;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * --------------------------------------------------------------------
+ * UDC:         VpsAPIRecordResult
+ * Author:      achinchalkar @ Veeva
+ * Date:        2023-03-14
+ *---------------------------------------------------------------------
+ * Description: Outcome of one row of a bulk vobject create/upsert:
+ *              the record id on success, the row errors otherwise.
+ *---------------------------------------------------------------------
+ * Copyright (c) 2023 Veeva Systems Inc.  All Rights Reserved.
+ *      This code is based on pre-existing content developed and
+ *      owned by Veeva Systems Inc. and may only be used in connection
+ *      with the deliverable with which it was provided to Customer.
+ *---------------------------------------------------------------------
+ */
+package com.veeva.vault.custom.util.api;
+
+import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+
+import java.util.List;
+
+@UserDefinedClassInfo()
+public class VpsAPIRecordResult {
+
+	private String id;
+	@SuppressWarnings("unchecked")
+	private List<VpsAPIError> errors = VaultCollections.newList();
+
+	public VpsAPIRecordResult(String id) {
+		super();
+
+		this.id = id;
+	}
+
+	public VpsAPIRecordResult(List<VpsAPIError> errors) {
+		super();
+
+		this.errors.addAll(errors);
+	}
+
+	/**
+	 * @return id of the created or updated record, null when the row failed
+	 */
+	public String getId() {
+		return id;
+	}
+
+	public List<VpsAPIError> getErrors() {
+		return errors;
+	}
+
+	public boolean isSuccess() {
+		return id != null && errors.isEmpty();
+	}
+
+	public String toString() {
+		return isSuccess() ? id : errors.toString();
+	}
+}
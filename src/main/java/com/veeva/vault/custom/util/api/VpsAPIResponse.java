@@ -4,7 +4,9 @@
  * Author:      achinchalkar @ Veeva
  * Date:        2019-07-25
  *---------------------------------------------------------------------
- * Description:
+ * Description: Wraps a Vault API response. JSONDATA bodies are read
+ *              without a String copy. Errors are decoded once into
+ *              typed VpsAPIError instances.
  *---------------------------------------------------------------------
  * Copyright (c) 2019 Veeva Systems Inc.  All Rights Reserved.
  *      This code is based on pre-existing content developed and
@@ -16,32 +18,51 @@ package com.veeva.vault.custom.util.api;
 
 import com.veeva.vault.sdk.api.core.ServiceLocator;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
+import com.veeva.vault.sdk.api.http.HttpOperationError;
 import com.veeva.vault.sdk.api.json.JsonArray;
+import com.veeva.vault.sdk.api.json.JsonData;
 import com.veeva.vault.sdk.api.json.JsonObject;
 import com.veeva.vault.sdk.api.json.JsonService;
 import com.veeva.vault.sdk.api.json.JsonValueType;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @UserDefinedClassInfo()
 public class VpsAPIResponse {
 
 	private static final String APIFIELD_ERRORS = "errors";
+	private static final String APIFIELD_ERROR_MESSAGE = "message";
+	private static final String APIFIELD_ERROR_TYPE = "type";
 	private static final String APIFIELD_RESPONSE_DETAILS = "responseDetails";
 	private static final String APIFIELD_RESPONSE_MESSAGE = "responseMessage";
 	private static final String APIFIELD_RESPONSE_STATUS = "responseStatus";
+	private static final String RESPONSESTATUS_SUCCESS = "SUCCESS";
 
-	private JsonService jsonService = ServiceLocator.locate(JsonService.class);
 	private JsonObject rootJson = null;
 	private String rawJson = null;
+	private List<VpsAPIError> decodedErrors = null;
+
+	/**
+	 * Response of an HTTP error; there is no body
+	 */
+	private VpsAPIResponse() {
+		super();
+	}
+
+	public VpsAPIResponse(JsonData jsonResponse) {
+		super();
+
+		if (jsonResponse != null && jsonResponse.isValidJson()) {
+			rootJson = jsonResponse.getJsonObject();
+		}
+	}
 
 	public VpsAPIResponse(JsonObject jsonResponse) {
 		super();
 
 		rootJson = jsonResponse;
-		if (rootJson != null) {
-			rawJson = rootJson.asString();
-		}
 	}
 
 	public VpsAPIResponse(String jsonResponse) {
@@ -49,8 +70,85 @@ public class VpsAPIResponse {
 
 		rawJson = jsonResponse;
 		if (rawJson != null) {
-			rootJson = jsonService.readJson(jsonResponse).getJsonObject();
+			rootJson = ServiceLocator.locate(JsonService.class).readJson(rawJson).getJsonObject();
+		}
+	}
+
+	/**
+	 * @param statusCode HTTP status code of the failed callout
+	 * @return a FAILURE response carrying a single HTTP_ERROR error
+	 */
+	public static VpsAPIResponse httpError(int statusCode) {
+		return httpError("HTTP Status Code: " + statusCode);
+	}
+
+	/**
+	 * @param httpOperationError error of the failed callout, with or without an HTTP response
+	 * @return a FAILURE response carrying a single HTTP_ERROR error
+	 */
+	public static VpsAPIResponse httpError(HttpOperationError httpOperationError) {
+		if (httpOperationError.getHttpResponse() != null) {
+			return httpError(httpOperationError.getHttpResponse().getHttpStatusCode());
 		}
+		return httpError(httpOperationError.getMessage());
+	}
+
+	/**
+	 * @param message error message of a callout that returned no HTTP response
+	 * @return a FAILURE response carrying a single HTTP_ERROR error
+	 */
+	@SuppressWarnings("unchecked")
+	public static VpsAPIResponse httpError(String message) {
+		VpsAPIResponse response = new VpsAPIResponse();
+		response.decodedErrors = VaultCollections.newList();
+		response.decodedErrors.add(new VpsAPIError(VpsAPIError.TYPE_HTTP_ERROR, message));
+		return response;
+	}
+
+	/**
+	 * @return true when responseStatus is SUCCESS
+	 */
+	public boolean isSuccess() {
+		return RESPONSESTATUS_SUCCESS.equals(getResponseStatus());
+	}
+
+	/**
+	 * Decodes the errors array once. A failure without an errors array is
+	 * returned as a single error carrying the responseMessage.
+	 *
+	 * @return errors of the response, empty on success
+	 */
+	@SuppressWarnings("unchecked")
+	public List<VpsAPIError> decodeErrors() {
+		if (decodedErrors == null) {
+			decodedErrors = VaultCollections.newList();
+			JsonArray errors = getErrors();
+			if (errors != null) {
+				for (int i = 0; i < errors.getSize(); i++) {
+					JsonObject error = errors.getValue(i, JsonValueType.OBJECT);
+					decodedErrors.add(new VpsAPIError(
+							readString(error, APIFIELD_ERROR_TYPE),
+							readString(error, APIFIELD_ERROR_MESSAGE)));
+				}
+			}
+			else if (!isSuccess() && getResponseMessage() != null) {
+				decodedErrors.add(new VpsAPIError(getResponseStatus(), getResponseMessage()));
+			}
+		}
+		return decodedErrors;
+	}
+
+	/**
+	 * @param category one of the VpsAPIError CATEGORY constants
+	 * @return true if any error of the response is in the category
+	 */
+	public boolean hasErrorCategory(String category) {
+		for (VpsAPIError error : decodeErrors()) {
+			if (category.equals(error.getCategory())) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public JsonArray getErrors() {
@@ -125,6 +223,16 @@ public class VpsAPIResponse {
 	}
 
 	public String toString() {
-		return rootJson.toString();
+		if (rawJson != null) {
+			return rawJson;
+		}
+		return rootJson == null ? null : rootJson.asString();
+	}
+
+	private static String readString(JsonObject json, String key) {
+		if (json.contains(key) && !json.isNullValue(key)) {
+			return json.getValue(key, JsonValueType.STRING);
+		}
+		return null;
 	}
-}
\ No newline at end of file
+}
@@ -17,8 +17,11 @@ package com.veeva.vault.custom.util.api;
 
 import com.veeva.vault.custom.util.VpsBaseHelper;
 import com.veeva.vault.custom.util.VpsUtilHelper;
+import com.veeva.vault.custom.util.VpsVQLHelper;
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
+import com.veeva.vault.sdk.api.core.VaultCollections;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -90,4 +93,24 @@ public class VpsVQLRequest extends VpsBaseHelper {
 	public void logVQL() {
 		getLogService().info(vql.toString());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Creates one request per chunk of values, each within the VQL query length limit.
+	 * See VpsVQLHelper.buildChunkedVQL.
+	 *
+	 * @param baseQuery query containing VpsVQLHelper.VALUES_TOKEN
+	 * @param values values to substitute for the token
+	 * @param addQuotes adds quotes to values (object ids require quotes; doc ids do not)
+	 * @return the chunked requests; empty when there are no values
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<VpsVQLRequest> newChunkedRequests(String baseQuery, Collection<String> values, Boolean addQuotes) {
+		List<VpsVQLRequest> requests = VaultCollections.newList();
+		for (String query : VpsVQLHelper.buildChunkedVQL(baseQuery, values, addQuotes)) {
+			VpsVQLRequest request = new VpsVQLRequest();
+			request.appendVQL(query);
+			requests.add(request);
+		}
+		return requests;
+	}
+}
@@ -16,6 +16,7 @@ package com.veeva.vault.custom.util.api;
 
 import com.veeva.vault.sdk.api.core.UserDefinedClassInfo;
 import com.veeva.vault.sdk.api.json.JsonArray;
+import com.veeva.vault.sdk.api.json.JsonData;
 import com.veeva.vault.sdk.api.json.JsonObject;
 import com.veeva.vault.sdk.api.json.JsonValueType;
 
@@ -27,6 +28,10 @@ public class VpsVQLResponse extends VpsAPIResponse {
 	private static final String APIFIELD_DATA = "data";
 	private static final String APIFIELD_TOTAL = "total";
 
+	public VpsVQLResponse(JsonData jsonResponse) {
+		super(jsonResponse);
+	}
+
 	public VpsVQLResponse(JsonObject jsonResponse) {
 		super(jsonResponse);
 	}